@@ -0,0 +1,158 @@
+//==============================================================================
+//  Filename:       BackBuffer.java
+//  Purpose:        Back buffer for double buffering that lives in accelerated
+//                  video memory when it can.  The buffer is a VolatileImage
+//                  created once and reused for every game state; it is only
+//                  recreated when the component is resized or moved to an
+//                  incompatible screen.  If its contents are lost (display
+//                  mode change, screen saver, ...) the frame is simply drawn
+//                  again.  Where no accelerated surface is available, such as
+//                  when the component is not on screen yet, an ordinary
+//                  offscreen image is used instead.
+//==============================================================================
+
+import java.awt.*;
+import java.awt.image.VolatileImage;
+
+public class BackBuffer
+{
+    private Component       owner;          //component being drawn to.
+    private Dimension       size;           //shared size of the drawing area.
+    private Image           buffer;         //the back buffer itself.
+    private Graphics2D      context;        //graphics for the back buffer.
+    private boolean         resized;        //set when the size has changed.
+
+    //--------------------------------------------------------------------------
+    //  BackBuffer()
+    //
+    //  Takes the component to draw on and the dimension object the rest of
+    //  the game reads its size from.  The dimension is updated in place on a
+    //  resize, so every class holding it sees the new size.
+    //
+    //--------------------------------------------------------------------------
+    public BackBuffer(Component owner, Dimension size)
+    {
+        this.owner = owner;
+        this.size = size;
+    }
+
+    //--------------------------------------------------------------------------
+    //  begin()
+    //
+    //  Makes sure the buffer exists, matches the component size and has its
+    //  contents, then returns the graphics context to draw the frame on.
+    //
+    //--------------------------------------------------------------------------
+    public Graphics2D begin()
+    {
+        Dimension current = owner.getSize();
+
+        if(current.width > 0 && current.height > 0 && !current.equals(size))
+        {
+            size.setSize(current);
+            resized = true;
+            release();
+        }
+
+        if(buffer instanceof VolatileImage)
+        {
+            GraphicsConfiguration config = owner.getGraphicsConfiguration();
+
+            switch(((VolatileImage)buffer).validate(config))
+            {
+                case VolatileImage.IMAGE_INCOMPATIBLE:
+                    release();
+                    break;
+                case VolatileImage.IMAGE_RESTORED:
+                    //----------------------------------------------------------
+                    //  The surface was recreated, so get a fresh context for
+                    //  it.  The frame about to be drawn replaces the contents.
+                    //----------------------------------------------------------
+                    context.dispose();
+                    context = (Graphics2D)buffer.getGraphics();
+                    break;
+            }
+        }
+
+        if(buffer == null)
+        {
+            create();
+        }
+        return context;
+    }
+
+    //--------------------------------------------------------------------------
+    //  show()
+    //
+    //  Copies the finished frame onto the screen in a single blit.  Returns
+    //  false if the contents were lost while drawing, in which case the
+    //  caller should repaint.
+    //
+    //--------------------------------------------------------------------------
+    public boolean show(Graphics g)
+    {
+        g.drawImage(buffer, 0, 0, null);
+
+        return !(buffer instanceof VolatileImage)
+               || !((VolatileImage)buffer).contentsLost();
+    }
+
+    //--------------------------------------------------------------------------
+    //  wasResized()
+    //
+    //  Returns true, once, after the buffer followed a resize of the
+    //  component.
+    //
+    //--------------------------------------------------------------------------
+    public boolean wasResized()
+    {
+        boolean result = resized;
+        resized = false;
+        return result;
+    }
+
+    //--------------------------------------------------------------------------
+    //  release()
+    //
+    //  Frees the buffer.  It is created again on the next begin().
+    //
+    //--------------------------------------------------------------------------
+    public void release()
+    {
+        if(context != null)
+        {
+            context.dispose();
+            context = null;
+        }
+        if(buffer != null)
+        {
+            buffer.flush();
+            buffer = null;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  create()
+    //
+    //  Creates an accelerated buffer if the component is on a screen, an
+    //  ordinary offscreen image otherwise.
+    //
+    //--------------------------------------------------------------------------
+    private void create()
+    {
+        GraphicsConfiguration config = owner.getGraphicsConfiguration();
+
+        if(config != null)
+        {
+            VolatileImage image = config.createCompatibleVolatileImage(size.width,
+                                                                       size.height);
+            image.validate(config);
+            buffer = image;
+        }
+        else
+        {
+            buffer = owner.createImage(size.width, size.height);
+        }
+        context = (Graphics2D)buffer.getGraphics();
+    }
+}
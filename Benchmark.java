@@ -0,0 +1,30 @@
+package perf;
+
+/*########################################################################
+ *
+ * Benchmark
+ *
+ *   One timed operation for BenchmarkRunner.  run() is called over and
+ * over; whatever it returns is folded into a sink so the JIT cannot
+ * throw the work away.  setUp() is called once, before any timing.
+ *
+ ######################################################################*/
+
+public abstract class Benchmark
+{
+  String name;
+
+  protected Benchmark(String name)
+    {
+      this.name = name;
+    }
+
+  public String getName()
+    {
+      return name;
+    }
+
+  public void setUp() {}
+
+  public abstract long run();
+}
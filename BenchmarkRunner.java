@@ -0,0 +1,250 @@
+package perf;
+
+/*########################################################################
+ *
+ * BenchmarkRunner
+ *
+ *   Small stand alone micro benchmark harness for the DeathTrap side,
+ * which is in the default package and so out of reach of JMH; cannon
+ * and perf are benchmarked with JMH in jmh/, and so are the DeathTrap
+ * frame phases that SyntheticFrame can run without the applet.  Each benchmark is warmed
+ * up, then run for a number of fixed length iterations; the median time
+ * per operation is reported together with the bytes allocated per
+ * operation by the benchmark thread.
+ *
+ *   Results are printed one per line as
+ *
+ *     name <tab> ns/op <tab> bytes/op
+ *
+ * which is also the format of a baseline file.  Given a baseline, any
+ * benchmark slower or allocating more than the tolerance allows is
+ * reported as a regression and run() returns false, so a CI job can
+ * fail on it.
+ *
+ *   Times in a baseline are only meaningful on the machine that wrote
+ * them, so every run also measures CALIBRATION, a fixed chain of
+ * multiplies, and baseline times are scaled by how much faster or
+ * slower it ran here than in the baseline before they are compared.
+ * Bytes per operation are compared as they are.
+ *
+ *   Options:  -baseline file   compare against this file
+ *             -out file        also write the results to this file
+ *             -tolerance pct   allowed slow down, default 20
+ *             -time ms         length of one iteration, default 500
+ *             -filter text     only run benchmarks whose name has text
+ *
+ ######################################################################*/
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+public class BenchmarkRunner
+{
+  static final int WARMUP_ITERATIONS = 3;
+  static final int ITERATIONS = 5;
+
+  public static final String CALIBRATION = "calibration";
+
+  List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+  File baseline, out;
+  double tolerance = 20;
+  long iterationMillis = 500;
+  String filter = "";
+  long sink;
+
+  public BenchmarkRunner(String args[])
+    {
+      for (int i = 0; i < args.length; i++)
+	{
+	  if (args[i].equals("-baseline")) baseline = new File(args[++i]);
+	  else if (args[i].equals("-out")) out = new File(args[++i]);
+	  else if (args[i].equals("-tolerance")) tolerance = Double.parseDouble(args[++i]);
+	  else if (args[i].equals("-time")) iterationMillis = Long.parseLong(args[++i]);
+	  else if (args[i].equals("-filter")) filter = args[++i];
+	  else throw new IllegalArgumentException("unknown option " + args[i]);
+	}
+    }
+
+  public void add(Benchmark b)
+    {
+      benchmarks.add(b);
+    }
+
+  //##### Runs everything; false if a baseline was given and was missed
+  public boolean run() throws IOException
+    {
+      Map<String, double[]> base = (baseline != null) ? read(baseline)
+	: new HashMap<String, double[]>();
+      StringBuilder results = new StringBuilder();
+      boolean ok = true;
+
+      double calibration[] = measure(new Benchmark(CALIBRATION) {
+	  long x = 1;
+	  public long run() {
+	    return x = calibrate(x);
+	  }
+	});
+      String line = CALIBRATION + "\t" + format(calibration[0]) + "\t" + format(calibration[1]);
+      results.append(line).append('\n');
+      System.out.println(line);
+      double scale = scale(calibration, base);
+
+      for (Benchmark b : benchmarks)
+	{
+	  if (b.getName().indexOf(filter) < 0) continue;
+
+	  double result[] = measure(b);
+	  line = b.getName() + "\t" + format(result[0]) + "\t" + format(result[1]);
+	  results.append(line).append('\n');
+
+	  String regression = regression(result, base.get(b.getName()), scale, tolerance);
+	  if (regression != null)
+	    {
+	      line += regression;
+	      ok = false;
+	    }
+	  System.out.println(line);
+	}
+
+      if (out != null)
+	{
+	  Writer writer = new FileWriter(out);
+	  try { writer.write(results.toString()); }
+	  finally { writer.close(); }
+	}
+      return ok;
+    }
+
+  //##### The work CALIBRATION times: 64 dependent multiply-adds, so it
+  //##### goes with the speed of the core and not of the memory
+  public static long calibrate(long x)
+    {
+      for (int i = 0; i < 64; i++)
+	x = x * 6364136223846793005L + 1442695040888963407L;
+      return x;
+    }
+
+  //##### How much slower this machine is than the one base was written
+  //##### on, going by CALIBRATION; 1 if base has no CALIBRATION line
+  public static double scale(double calibration[], Map<String, double[]> base)
+    {
+      double expected[] = base.get(CALIBRATION);
+      return (expected != null && calibration != null) ? calibration[0] / expected[0] : 1;
+    }
+
+  //##### Why result misses expected, or null if it does not.  expected
+  //##### may be null, for a benchmark the baseline does not have.
+  public static String regression(double result[], double expected[],
+				  double scale, double tolerance)
+    {
+      String slower = slower(result, expected, scale, tolerance);
+      String allocates = allocates(result, expected, tolerance);
+      if (slower == null) return allocates;
+      return (allocates == null) ? slower : slower + allocates;
+    }
+
+  //##### The time half of regression()
+  public static String slower(double result[], double expected[],
+			      double scale, double tolerance)
+    {
+      if (expected == null
+	  || result[0] <= expected[0] * scale * (1 + tolerance / 100)) return null;
+      return "\tREGRESSION time (baseline " + format(expected[0])
+	+ ", " + format(expected[0] * scale) + " here)";
+    }
+
+  //##### The allocation half of regression(); a few bytes of noise is
+  //##### not a regression
+  public static String allocates(double result[], double expected[],
+				 double tolerance)
+    {
+      if (expected == null
+	  || result[1] <= expected[1] * (1 + tolerance / 100) + 16) return null;
+      return "\tREGRESSION allocation (baseline " + format(expected[1]) + ")";
+    }
+
+  //##### { ns/op, bytes/op }
+  double[] measure(Benchmark b)
+    {
+      b.setUp();
+
+      for (int i = 0; i < WARMUP_ITERATIONS; i++) iterate(b);
+
+      double times[] = new double[ITERATIONS];
+      double bytes[] = new double[ITERATIONS];
+      for (int i = 0; i < ITERATIONS; i++)
+	{
+	  long before = allocatedBytes();
+	  long start = System.nanoTime();
+	  long ops = iterate(b);
+	  long elapsed = System.nanoTime() - start;
+	  long allocated = allocatedBytes() - before;
+	  times[i] = (double)elapsed / ops;
+	  bytes[i] = (before < 0) ? 0 : (double)allocated / ops;
+	}
+
+      Arrays.sort(times);
+      Arrays.sort(bytes);
+      return new double[] { times[ITERATIONS / 2], bytes[ITERATIONS / 2] };
+    }
+
+  //##### Runs the benchmark for one iteration; returns the ops done
+  long iterate(Benchmark b)
+    {
+      long end = System.nanoTime() + iterationMillis * 1000000L;
+      long ops = 0;
+
+      do
+	{
+	  //##### Check the clock every few calls only
+	  for (int i = 0; i < 16; i++) sink += b.run();
+	  ops += 16;
+	}
+      while (System.nanoTime() < end);
+      return ops;
+    }
+
+  //##### Bytes allocated by this thread so far, or -1 if unknown
+  static long allocatedBytes()
+    {
+      try
+	{
+	  com.sun.management.ThreadMXBean threads =
+	    (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	  return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+      catch (Throwable e)
+	{
+	  return -1;
+	}
+    }
+
+  public static Map<String, double[]> read(File file) throws IOException
+    {
+      Map<String, double[]> result = new HashMap<String, double[]>();
+      BufferedReader reader = new BufferedReader(new FileReader(file));
+
+      try
+	{
+	  String line;
+	  while ((line = reader.readLine()) != null)
+	    {
+	      if (line.length() == 0 || line.startsWith("#")) continue;
+	      String fields[] = line.split("\t");
+	      result.put(fields[0], new double[] { Double.parseDouble(fields[1]),
+						   Double.parseDouble(fields[2]) });
+	    }
+	}
+      finally
+	{
+	  reader.close();
+	}
+      return result;
+    }
+
+  public static String format(double value)
+    {
+      return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
@@ -50,7 +50,15 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.*;
 import java.applet.AudioClip;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.awt.geom.AffineTransform;
+import perf.FrameProfiler;
 
 public class DeathTrap extends JApplet implements Runnable
 {
@@ -59,6 +67,33 @@ public class DeathTrap extends JApplet implements Runnable
     //--------------------------------------------------------------------------
     static final byte       
     BEGINNING = 0, RUNNING = 1, END = 2, GAME_OVER = 3;
+
+    //--------------------------------------------------------------------------
+    //  Milliseconds the thread sleeps between frames in each state, indexed
+    //  by the state.
+    //--------------------------------------------------------------------------
+    static final long       TICK_MILLIS[] = { 1000 / 40, 1000 / 10, 1000 / 40, 1000 / 200 };
+
+    //--------------------------------------------------------------------------
+    //  The opening and closing screens are drawn at full rate for a while
+    //  after the state starts or a key is pressed, long enough for their
+    //  animations, then only every keyframe until the next key.  The maze and
+    //  the game over animation never go idle.
+    //--------------------------------------------------------------------------
+    static final long       SETTLE_MILLIS[] = 
+    { 5000, RenderScheduler.NEVER, 10000, RenderScheduler.NEVER };
+    static final long       KEYFRAME_MILLIS[] = { 250, 0, 250, 0 };
+
+    //--------------------------------------------------------------------------
+    //  Phases of a frame timed by the profiler.
+    //--------------------------------------------------------------------------
+    static final int        
+    PHASE_VIEW = 0, PHASE_PLAYER = 1, PHASE_COMPASS = 2, PHASE_STATS = 3,
+    PHASE_PRESENT = 4;
+    static final String     PHASE_NAMES[] = 
+    { "drawCurrentScene", "processPlayer", "drawCompass", "drawCurrentStats",
+      "drawImage" };
+
     private int             alphaDirection;         //direction of the fade.
     private int             gameState;              //game state 
 
@@ -73,7 +108,7 @@ public class DeathTrap extends JApplet implements Runnable
     private float           alpha;              //used for fading effects
     private boolean         running;            //used in the thread.
     private boolean         levelFade;          //used for level transition
-    private long            timeToSleep;        //time for the thread to sleep
+    private RenderScheduler scheduler;          //paces the thread.
     private Thread          ticker;             //the thread used in game.
     private Dimension       appletDimensions;   //the dimensions of the applet.
     private Graphics2D      g2Context;          //graphics context to draw on
@@ -86,9 +121,9 @@ public class DeathTrap extends JApplet implements Runnable
     gameOverImage, background;
 
     //--------------------------------------------------------------------------
-    //  Created offscreen image.
+    //  Offscreen back buffer, kept in video memory when possible.
     //--------------------------------------------------------------------------
-    private Image           imageToCreate;
+    private BackBuffer      backBuffer;
 
     //--------------------------------------------------------------------------
     //  User defined classes.
@@ -100,12 +135,53 @@ public class DeathTrap extends JApplet implements Runnable
     private ClosingSequence endScene;
     private SoundEffects    sounds;
     private Player          player;
+    private InputLog        inputLog;       //keys pressed since the beginning.
+    private long            logStart;       //time the input log was started.
+    private VisibilitySet   visibleCells;   //cells in view from each cell.
+    private RenderScaler    sceneScaler;    //dynamic resolution of the view.
+    private FrameProfiler   profiler;       //per phase frame times.
+    private GameSnapshot    snapshot;       //reused to save and restore.
+    private ByteBuffer      checkpoint;     //last saved snapshot.
+    private boolean         haveCheckpoint; //set once a checkpoint is saved.
+    private volatile File   checkpointFile; //where it is kept, or null.
+    private ExecutorService checkpointWriter; //writes it to the file.
+    private TickHistory     history;        //recent running ticks.
+    private long            levelStart;     //time the current level started.
+    private MinimapTiles    minimap;        //for large mazes, else null.
+    private volatile LightMap lights;       //light level of each cell.
+
+    //--------------------------------------------------------------------------
+    //  Frame time, in milliseconds, the 3D view is scaled down to stay under.
+    //--------------------------------------------------------------------------
+    static final long       FRAME_BUDGET = 1000 / 40;
+
+    //--------------------------------------------------------------------------
+    //  Running ticks kept for rewinding: the last ten seconds.
+    //--------------------------------------------------------------------------
+    static final int        REWIND_TICKS = (int)(10 * 1000 / TICK_MILLIS[RUNNING]);
+
+    //--------------------------------------------------------------------------
+    //  File the checkpoint is kept in, in the user's home directory, unless
+    //  the "checkpoint" parameter names another.  The game only starts from
+    //  it when the "resume" parameter is true.
+    //--------------------------------------------------------------------------
+    static final String     CHECKPOINT_NAME = ".deathtrap-checkpoint";
+
+    //--------------------------------------------------------------------------
+    //  Mazes wider or taller than MINIMAP_CELLS get the tiled minimap instead
+    //  of the compass, whose cost grows with the maze.  It is MINIMAP_SIZE
+    //  pixels square, with MINIMAP_CELL pixels per cell.
+    //--------------------------------------------------------------------------
+    static final int        MINIMAP_CELLS = 32;
+    static final int        MINIMAP_SIZE = 120;
+    static final int        MINIMAP_CELL = 4;
 
     //--------------------------------------------------------------------------
     //  Sound effects used in the game.
     //--------------------------------------------------------------------------
     private AudioClip       introMusic, introLoop, mazeSolved, mazeLoop, 
     playerHit, playerDeath, monsterHit, monsterDeath, gunshot, credits;
+    private MusicStreamer   music;          //plays the music tracks.
 
     //--------------------------------------------------------------------------
     //  Inner class that handles keys pressed in the applet.  Since the
@@ -120,11 +196,14 @@ public class DeathTrap extends JApplet implements Runnable
             //  Get the key code of the key that was just hit.
             //------------------------------------------------------------------
             int keyCode = e.getKeyCode();
+            inputLog.add(System.currentTimeMillis() - logStart, keyCode);
+            scheduler.wake();
 
             switch(gameState)
             {
                 case BEGINNING:
                     setState(RUNNING); 
+                    saveCheckpoint();
                     break;
                 case RUNNING:
                     //----------------------------------------------------------
@@ -187,6 +266,8 @@ public class DeathTrap extends JApplet implements Runnable
         //  Get dimensions of applet.
         //----------------------------------------------------------------------
         appletDimensions = new Dimension(getSize());
+        backBuffer = new BackBuffer(this, appletDimensions);
+        profiler = new FrameProfiler("DeathTrap", PHASE_NAMES);
 
         //----------------------------------------------------------------------
         //  Allocate memory for the doors.
@@ -229,8 +310,24 @@ public class DeathTrap extends JApplet implements Runnable
         //  Instantiate the user defined classes.
         //----------------------------------------------------------------------
         map = new Map();
+        inputLog = new InputLog();
+        snapshot = new GameSnapshot();
+        checkpoint = GameSnapshot.allocateBuffer();
+        checkpointFile = findCheckpointFile();
+        checkpointWriter = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable task)
+            {
+                Thread thread = new Thread(task, "DeathTrap checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        history = new TickHistory(REWIND_TICKS);
+        scheduler = new RenderScheduler();
         miniRadar = new Compass(appletDimensions, map);
         view = new ViewPort(appletDimensions, map);
+        sceneScaler = new RenderScaler(appletDimensions, FRAME_BUDGET);
         addKeyListener(new MazeKeyAdapter());
 
         begScene = 
@@ -271,6 +368,15 @@ public class DeathTrap extends JApplet implements Runnable
         //  Set the state of the game.
         //----------------------------------------------------------------------
         setState(BEGINNING);
+
+        //----------------------------------------------------------------------
+        //  Carry on from where the last session left off, if asked to and it
+        //  saved.
+        //----------------------------------------------------------------------
+        if("true".equals(getParameter("resume")))
+        {
+            resumeCheckpoint();
+        }
     }                  
 
     public void paint(Graphics g)                               
@@ -279,18 +385,16 @@ public class DeathTrap extends JApplet implements Runnable
         //  Type cast this to a graphics2D object.
         //----------------------------------------------------------------------
         Graphics2D g2 = (Graphics2D) g;
+        long phaseStart = profiler.begin();
 
-        if(g2Context == null)
+        //----------------------------------------------------------------------
+        //  Get the back buffer to draw to.  It follows the size of the applet,
+        //  which also updates appletDimensions for everything else.
+        //----------------------------------------------------------------------
+        g2Context = backBuffer.begin();
+        if(backBuffer.wasResized() && gameState != GAME_OVER)
         {
-            //------------------------------------------------------------------
-            //  Create image offscreen for double buffering.
-            //------------------------------------------------------------------
-            imageToCreate = createImage(appletDimensions.width, 
-                                        appletDimensions.height);
-            //------------------------------------------------------------------
-            //  Get a graphics context for the image so it can be drawn to.
-            //------------------------------------------------------------------
-            g2Context = (Graphics2D)imageToCreate.getGraphics();
+            resetDoorPoints();
         }
 
         //----------------------------------------------------------------------
@@ -308,10 +412,21 @@ public class DeathTrap extends JApplet implements Runnable
                 //--------------------------------------------------------------
                 //  If it's in the running state do the following.
                 //--------------------------------------------------------------
-                view.drawCurrentScene(g2Context, map);
+                //--------------------------------------------------------------
+                //  The 3D view may be drawn at a reduced resolution, the HUD
+                //  is always drawn at full size on top of it.
+                //--------------------------------------------------------------
+                view.drawCurrentScene(sceneScaler.beginScene(g2Context), map);
+                sceneScaler.endScene();
+                phaseStart = profiler.end(PHASE_VIEW, phaseStart);
                 player.processPlayer(g2Context, map);
-                miniRadar.drawCompass(g2Context, map);
+                phaseStart = profiler.end(PHASE_PLAYER, phaseStart);
+                drawMinimap(g2Context);
+                phaseStart = profiler.end(PHASE_COMPASS, phaseStart);
                 player.drawCurrentStats(g2Context, map);
+                phaseStart = profiler.end(PHASE_STATS, phaseStart);
+                sceneScaler.endFrame();
+
                 //--------------------------------------------------------------
                 //  Check status of player each time through.
                 //--------------------------------------------------------------
@@ -371,7 +486,9 @@ public class DeathTrap extends JApplet implements Runnable
                     }
 
                     levelFade = false;
-                    miniRadar.drawMapImage(map.getCurrentMap());
+                    loadLevelData();
+                    saveCheckpoint();
+                    levelStart = System.currentTimeMillis();
                 }
                 if(levelFade == false)
                 {
@@ -387,8 +504,10 @@ public class DeathTrap extends JApplet implements Runnable
                 //--------------------------------------------------------------
                 if(gameOverAnimationCounter > 0)
                 {
-                    view.drawCurrentScene(g2Context, map);
+                    view.drawCurrentScene(sceneScaler.beginScene(g2Context), map);
+                    sceneScaler.endScene();
                     drawGameOver(g2Context);
+                    sceneScaler.endFrame();
                 }
                 else
                 {
@@ -410,25 +529,47 @@ public class DeathTrap extends JApplet implements Runnable
 
         //----------------------------------------------------------------------
         //  Draw the image that we create each time, for each case to the screen.
+        //  If the buffer lost its contents on the way, draw the frame again.
         //----------------------------------------------------------------------
-        g2.drawImage(imageToCreate, 0, 0, null);
+        phaseStart = profiler.begin();
+        if(!backBuffer.show(g2))
+        {
+            repaint();
+        }
+        profiler.end(PHASE_PRESENT, phaseStart);
     }
 
     //--------------------------------------------------------------------------
     //  run()
     //
-    //  Used for the thread in the game, making it sleep for the specified time,
-    //  while it is in the running mode.
+    //  Used for the thread in the game, repainting whenever the scheduler says
+    //  the next frame is due.
     //
     //--------------------------------------------------------------------------
     public void run()
     {
+        long nextTick = System.currentTimeMillis();
         while(running)
         {
+            //------------------------------------------------------------------
+            //  Keep each running tick for rewinding.  Frames also come early
+            //  when a key wakes the thread, so go by the clock, not by frames.
+            //------------------------------------------------------------------
+            long now = System.currentTimeMillis();
+            if(now >= nextTick)
+            {
+                if(gameState == RUNNING)
+                {
+                    Point position = map.getPlayerPosition();
+                    history.record(position.x, position.y, player.getStatus(),
+                                   (int)(now - levelStart), map.getLevel());
+                }
+                nextTick = Math.max(nextTick + TICK_MILLIS[RUNNING], now);
+            }
             repaint();
             try
             {
-                ticker.sleep(timeToSleep);
+                scheduler.waitForFrame();
             }
             catch(InterruptedException e)
             {
@@ -446,7 +587,7 @@ public class DeathTrap extends JApplet implements Runnable
     {
         if(ticker == null || !ticker.isAlive())
         {
-            timeToSleep = 1000 / 40;
+            setTickRate(gameState);
             running = true;
             ticker = new Thread(this);
             ticker.setPriority(Thread.MIN_PRIORITY + 1);
@@ -460,6 +601,7 @@ public class DeathTrap extends JApplet implements Runnable
                 break;
             case(RUNNING):
                 sounds.playLevelLoop();
+                levelStart = System.currentTimeMillis();
                 break;
             case(END):
                 sounds.playCreditsLoop();
@@ -476,7 +618,215 @@ public class DeathTrap extends JApplet implements Runnable
     public synchronized void stop()
     {
         running = false;
+        scheduler.wake();
         sounds.stopAll();
+        saveCheckpoint();
+    }
+
+    //--------------------------------------------------------------------------
+    //  destroy()
+    //
+    //  When the applet is unloaded, end the music thread, which closes the
+    //  audio line of every track, and give the checkpoint that stop() queued
+    //  the time to reach the file.
+    //
+    //--------------------------------------------------------------------------
+    public void destroy()
+    {
+        music.close();
+        checkpointWriter.shutdown();
+        try
+        {
+            checkpointWriter.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  saveCheckpoint()
+    //
+    //  Records the game as it is now, so it can be brought back by
+    //  resumeCheckpoint().  Done when the applet is left and at the start of
+    //  each level.  It is written to the checkpoint file too, so a later
+    //  session can resume it; the write happens on the checkpoint writer
+    //  thread, not in the middle of a frame.  If the file cannot be written,
+    //  checkpoints are only kept in memory from then on.
+    //
+    //--------------------------------------------------------------------------
+    public void saveCheckpoint()
+    {
+        captureSnapshot(snapshot);
+        checkpoint.clear();
+        snapshot.writeTo(checkpoint);
+        haveCheckpoint = true;
+
+        if(checkpointFile != null)
+        {
+            //------------------------------------------------------------------
+            //  The buffer is reused by the next checkpoint, so the writer gets
+            //  its own copy of the bytes.
+            //------------------------------------------------------------------
+            ByteBuffer bytes = checkpoint.duplicate();
+            bytes.flip();
+            final ByteBuffer copy = ByteBuffer.allocate(bytes.remaining());
+            copy.put(bytes).flip();
+
+            checkpointWriter.execute(new Runnable()
+            {
+                public void run()
+                {
+                    File file = checkpointFile;
+                    if(file == null)
+                    {
+                        return;
+                    }
+                    try
+                    {
+                        GameSnapshot.write(file, copy);
+                    }
+                    catch(IOException e)
+                    {
+                        checkpointFile = null;
+                    }
+                    catch(SecurityException e)
+                    {
+                        checkpointFile = null;
+                    }
+                }
+            });
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  resumeCheckpoint()
+    //
+    //  Goes back to the last checkpoint: the one saved in this session, or
+    //  else the one in the checkpoint file.  Returns false if there is none
+    //  or the file does not hold one.
+    //
+    //--------------------------------------------------------------------------
+    public boolean resumeCheckpoint()
+    {
+        try
+        {
+            if(haveCheckpoint)
+            {
+                checkpoint.rewind();
+                snapshot.readFrom(checkpoint);
+            }
+            else if(checkpointFile != null && checkpointFile.isFile())
+            {
+                snapshot.load(checkpointFile, checkpoint);
+            }
+            else
+            {
+                return false;
+            }
+        }
+        catch(IOException e)
+        {
+            return false;
+        }
+        catch(SecurityException e)
+        {
+            return false;
+        }
+        catch(IllegalArgumentException e)
+        {
+            return false;
+        }
+        if(snapshot.gameState < BEGINNING || snapshot.gameState > GAME_OVER)
+        {
+            return false;
+        }
+        restoreSnapshot(snapshot);
+        return true;
+    }
+
+    //--------------------------------------------------------------------------
+    //  findCheckpointFile()
+    //
+    //  Returns the file named by the "checkpoint" parameter, else
+    //  CHECKPOINT_NAME in the home directory, or null if the applet may not
+    //  know where that is.
+    //
+    //--------------------------------------------------------------------------
+    private File findCheckpointFile()
+    {
+        try
+        {
+            String name = getParameter("checkpoint");
+            if(name != null)
+            {
+                return new File(name);
+            }
+            return new File(System.getProperty("user.home"), CHECKPOINT_NAME);
+        }
+        catch(SecurityException e)
+        {
+            return null;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  captureSnapshot()
+    //
+    //  Fills a snapshot with the state kept here and in the map.  Player does
+    //  not make its lives, health or timer available, so those stay unknown.
+    //
+    //--------------------------------------------------------------------------
+    public void captureSnapshot(GameSnapshot s)
+    {
+        Point position = map.getPlayerPosition();
+
+        s.clear();
+        s.gameState = gameState;
+        s.level = map.getLevel();
+        s.playerX = position.x;
+        s.playerY = position.y;
+        s.status = player.getStatus();
+        s.alphaDirection = alphaDirection;
+        s.levelFade = levelFade;
+        s.gameOverAnimationCounter = gameOverAnimationCounter;
+        s.alpha = alpha;
+        s.x = x;
+        s.y = y;
+        System.arraycopy(leftDoorxPoints, 0, s.leftDoorxPoints, 0, 3);
+        System.arraycopy(leftDooryPoints, 0, s.leftDooryPoints, 0, 3);
+        System.arraycopy(rightDoorxPoints, 0, s.rightDoorxPoints, 0, 3);
+        System.arraycopy(rightDooryPoints, 0, s.rightDooryPoints, 0, 3);
+    }
+
+    //--------------------------------------------------------------------------
+    //  restoreSnapshot()
+    //
+    //  Puts back a snapshot taken by captureSnapshot().  The game goes to the
+    //  saved state through setState(), so the music and pacing follow it, and
+    //  the map is moved to the saved level, where the player starts from the
+    //  beginning.
+    //
+    //--------------------------------------------------------------------------
+    public void restoreSnapshot(GameSnapshot s)
+    {
+        setState(s.gameState);
+        if(s.level != map.getLevel())
+        {
+            map.setBeginningState(s.level - 1);
+            loadLevelData();
+        }
+        alphaDirection = s.alphaDirection;
+        levelFade = s.levelFade;
+        gameOverAnimationCounter = s.gameOverAnimationCounter;
+        alpha = s.alpha;
+        x = s.x;
+        y = s.y;
+        System.arraycopy(s.leftDoorxPoints, 0, leftDoorxPoints, 0, 3);
+        System.arraycopy(s.leftDooryPoints, 0, leftDooryPoints, 0, 3);
+        System.arraycopy(s.rightDoorxPoints, 0, rightDoorxPoints, 0, 3);
+        System.arraycopy(s.rightDooryPoints, 0, rightDooryPoints, 0, 3);
     }
 
     //--------------------------------------------------------------------------
@@ -496,33 +846,47 @@ public class DeathTrap extends JApplet implements Runnable
                 sounds.playMazeSolved();
                 sounds.stopIntroLoop();
                 sounds.playLevelLoop();
-                timeToSleep = 1000 / 10;
+                levelStart = System.currentTimeMillis();
                 break;
             case END:
                 endScene.resetClosingSequence();
                 resetGame();
                 sounds.stopLevelLoop();
                 sounds.playCreditsLoop();
-                timeToSleep = 1000 / 40;
-                break;
-            case GAME_OVER:
-                timeToSleep = 1000 / 200;
                 break;
             case BEGINNING:
                 resetDoorPoints();
                 resetGame();
                 sounds.stopCreditsLoop();
                 sounds.playIntroLoop();
-                timeToSleep = 1000 / 40;
+                //--------------------------------------------------------------
+                //  A new game starts a new input log.
+                //--------------------------------------------------------------
+                inputLog.clear();
+                logStart = System.currentTimeMillis();
+                history.clear();
                 break;
         }
 
         //----------------------------------------------------------------------
-        //  Set the state.
+        //  Set the state and how fast it runs.
         //----------------------------------------------------------------------
+        setTickRate(newState);
         gameState = newState;
     }
 
+    //--------------------------------------------------------------------------
+    //  setTickRate()
+    //
+    //  Paces the thread for the given state, starting at full rate.
+    //
+    //--------------------------------------------------------------------------
+    private void setTickRate(int state)
+    {
+        scheduler.setRate(TICK_MILLIS[state], SETTLE_MILLIS[state],
+                          KEYFRAME_MILLIS[state]);
+    }
+
     //--------------------------------------------------------------------------
     //  drawGameOver()
     //
@@ -602,6 +966,107 @@ public class DeathTrap extends JApplet implements Runnable
         player.resetAll();
         map.setBeginningState(0);
         levelFade = false;
+        loadLevelData();
+    }
+
+    //--------------------------------------------------------------------------
+    //  loadLevelData()
+    //
+    //  Builds the data that only depends on the current maze layout, such as
+    //  the set of cells visible from each cell, and the minimap: the tiled
+    //  one for a large maze, else the compass's image of the whole maze,
+    //  which is only drawn when the compass is used.  Called whenever the map
+    //  changes level.
+    //
+    //--------------------------------------------------------------------------
+    public void loadLevelData()
+    {
+        int cells[][] = map.getCurrentMap();
+        visibleCells = new VisibilitySet(cells);
+        lights = new LightMap(cells, visibleCells, map.getMazeEnd());
+        sceneScaler.reset();
+        if(cells.length > MINIMAP_CELLS || cells[0].length > MINIMAP_CELLS)
+        {
+            minimap = new MinimapTiles(cells, MINIMAP_CELL);
+        }
+        else
+        {
+            minimap = null;
+            miniRadar.drawMapImage(cells);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  drawMinimap()
+    //
+    //  Draws the compass, or for large mazes the tiled minimap around the
+    //  player in the top right corner.
+    //
+    //--------------------------------------------------------------------------
+    private void drawMinimap(Graphics2D g)
+    {
+        if(minimap == null)
+        {
+            miniRadar.drawCompass(g, map);
+            return;
+        }
+
+        Point position = map.getPlayerPosition();
+        minimap.update(position.x, position.y, visibleCells);
+        minimap.draw(g, appletDimensions.width - MINIMAP_SIZE - 10, 10,
+                     MINIMAP_SIZE, position.x, position.y);
+    }
+
+    //--------------------------------------------------------------------------
+    //  getInputLog()
+    //
+    //  Returns the keys pressed since the game was last at the beginning, for
+    //  replaying with HeadlessGame.
+    //
+    //--------------------------------------------------------------------------
+    public InputLog getInputLog()
+    {
+        return inputLog;
+    }
+
+    //--------------------------------------------------------------------------
+    //  getHistory()
+    //
+    //  Returns the last ten seconds of running ticks.  The timer field is the
+    //  milliseconds since the level started.
+    //
+    //--------------------------------------------------------------------------
+    public TickHistory getHistory()
+    {
+        return history;
+    }
+
+    //--------------------------------------------------------------------------
+    //  getLights()
+    //
+    //  Returns the light levels of the current maze, for shading the view
+    //  cell by cell with LightMap.shade().  Nothing is drawn from them until
+    //  ViewPort shades its wall columns that way; a single shade over the
+    //  whole view darkened ordinary corridors by half and cost a blend of
+    //  every pixel each frame.  Until then the game adds no muzzle flashes
+    //  and does not tick the lights either, since nobody would see them;
+    //  the map only holds the baked levels.
+    //
+    //--------------------------------------------------------------------------
+    public LightMap getLights()
+    {
+        return lights;
+    }
+
+    //--------------------------------------------------------------------------
+    //  getVisibleCells()
+    //
+    //  Returns the potentially visible set for the current level.
+    //
+    //--------------------------------------------------------------------------
+    public VisibilitySet getVisibleCells()
+    {
+        return visibleCells;
     }
 
     //--------------------------------------------------------------------------
@@ -725,21 +1190,23 @@ public class DeathTrap extends JApplet implements Runnable
     //  loadSoundEffects()
     //
     //  Loads all the sound effects used in the game and puts them into AudioClip
-    //  objects.  They are currently located in the sounds/ directory.
+    //  objects.  They are currently located in the sounds/ directory.  The
+    //  music tracks are streamed when they play rather than loaded here.
     //
     //--------------------------------------------------------------------------
     public void loadSoundEffects()
     {
-        introMusic = getAudioClip(getDocumentBase(), "sounds/introMusic.au");
-        introLoop = getAudioClip(getDocumentBase(), "sounds/introLoop.au");
+        music = new MusicStreamer();
+        introMusic = music.getClip(getDocumentBase(), "sounds/introMusic.au");
+        introLoop = music.getClip(getDocumentBase(), "sounds/introLoop.au");
         mazeSolved = getAudioClip(getDocumentBase(), "sounds/mazeSolved.au");
         monsterHit = getAudioClip(getDocumentBase(), "sounds/monsterHit.au");
         monsterDeath = getAudioClip(getDocumentBase(), "sounds/monsterDeath.au");
         playerHit = getAudioClip(getDocumentBase(), "sounds/playerHit.au");
         playerDeath = getAudioClip(getDocumentBase(), "sounds/playerDeath.au");
-        mazeLoop = getAudioClip(getDocumentBase(), "sounds/mazeLoop.au");
+        mazeLoop = music.getClip(getDocumentBase(), "sounds/mazeLoop.au");
         gunshot = getAudioClip(getDocumentBase(), "sounds/gunshot.au");
-        credits = getAudioClip(getDocumentBase(), "sounds/credits.au");
+        credits = music.getClip(getDocumentBase(), "sounds/credits.au");
     }
 
     //--------------------------------------------------------------------------
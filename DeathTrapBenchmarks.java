@@ -0,0 +1,153 @@
+//==============================================================================
+//  Filename:       DeathTrapBenchmarks.java
+//  Purpose:        Benchmarks for the DeathTrap frame, drawn into an offscreen
+//                  BufferedImage so no display is needed.
+//                  a. The view port and compass phases of a RUNNING frame for
+//                     each of the map's levels.
+//                  b. Building the visible set and the visible and minimap
+//                     phases of a RUNNING frame (see SyntheticFrame), on
+//                     generated mazes of growing size, and filling a frame
+//                     with textured wall columns.  The JMH module runs the
+//                     SyntheticFrame ones too.
+//
+//  Usage:          java DeathTrapBenchmarks [-baseline bench-baseline.txt]
+//                  See perf.BenchmarkRunner for the other options.
+//==============================================================================
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import perf.Benchmark;
+import perf.BenchmarkRunner;
+
+public class DeathTrapBenchmarks
+{
+    static final int        WIDTH = 640, HEIGHT = 480;
+
+    public static void main(String args[]) throws Exception
+    {
+        System.setProperty("java.awt.headless", "true");
+        BenchmarkRunner runner = new BenchmarkRunner(args);
+
+        //----------------------------------------------------------------------
+        //  RUNNING frame phases, one benchmark per level of the map.
+        //----------------------------------------------------------------------
+        Map levels = new Map();
+        for(int level = 1; ; level++)
+        {
+            runner.add(new FrameBenchmark("deathtrap.frame.level" + level, level));
+            if(!levels.nextMap())
+            {
+                break;
+            }
+        }
+
+        //----------------------------------------------------------------------
+        //  Work that grows with the size of the maze.
+        //----------------------------------------------------------------------
+        for(int size = 32; size <= 256; size *= 2)
+        {
+            final int cells[][] = VisibilityBenchmark.generateMaze(size, size);
+
+            runner.add(new Benchmark("deathtrap.pvs.build." + size)
+            {
+                public long run()
+                {
+                    return new VisibilitySet(cells).countVisible(1, 1);
+                }
+            });
+
+            for(String phase : SyntheticFrame.PHASES)
+            {
+                runner.add(new SyntheticFrame(phase, size));
+            }
+        }
+
+        runner.add(new Benchmark("deathtrap.texture.frame")
+        {
+            BufferedImage frame;
+            int raster[];
+            WallTexture texture;
+
+            public void setUp()
+            {
+                frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+                raster = ((DataBufferInt)frame.getRaster().getDataBuffer()).getData();
+                int texels[] = new int[256 * 256];
+                for(int i = 0; i < texels.length; i++)
+                {
+                    //----------------------------------------------------------
+                    //  8x8 checker board of two greys.
+                    //----------------------------------------------------------
+                    boolean light = (((i >> 3) ^ (i >> 11)) & 1) != 0;
+                    texels[i] = light ? 0xff909090 : 0xff404040;
+                }
+                texture = new WallTexture("bench", texels, 256, 256);
+            }
+
+            //------------------------------------------------------------------
+            //  One frame of wall columns, from close up to far away.
+            //------------------------------------------------------------------
+            public long run()
+            {
+                for(int x = 0; x < WIDTH; x++)
+                {
+                    int height = 8 + (x * 2 * HEIGHT) / WIDTH;
+                    texture.drawColumn(raster, WIDTH, x, (HEIGHT - height) / 2,
+                                       height, (x & 63) / 64f, 256 - (x >> 2),
+                                       0, HEIGHT);
+                }
+                return raster[WIDTH * HEIGHT / 2];
+            }
+        });
+
+        if(!runner.run())
+        {
+            System.exit(1);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Draws the view port and the compass for one level, as the RUNNING state
+    //  of DeathTrap.paint() does.  Player needs the applet, so its phases are
+    //  not part of this.
+    //--------------------------------------------------------------------------
+    static class FrameBenchmark extends Benchmark
+    {
+        private int             level;
+        private Dimension       size;
+        private Map             map;
+        private ViewPort        view;
+        private Compass         compass;
+        private BufferedImage   frame;
+        private Graphics2D      context;
+
+        FrameBenchmark(String name, int level)
+        {
+            super(name);
+            this.level = level;
+        }
+
+        public void setUp()
+        {
+            size = new Dimension(WIDTH, HEIGHT);
+            map = new Map();
+            for(int i = 1; i < level; i++)
+            {
+                map.nextMap();
+            }
+            view = new ViewPort(size, map);
+            compass = new Compass(size, map);
+            compass.drawMapImage(map.getCurrentMap());
+            frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            context = frame.createGraphics();
+        }
+
+        public long run()
+        {
+            view.drawCurrentScene(context, map);
+            compass.drawCompass(context, map);
+            return frame.getRGB(WIDTH / 2, HEIGHT / 2);
+        }
+    }
+}
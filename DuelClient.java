@@ -0,0 +1,116 @@
+package cannon;
+
+/*########################################################################
+ *
+ * DuelClient
+ *
+ *   One player's connection to a DuelServer.  Sending happens on the
+ * caller's thread; a daemon thread reads the server's messages and
+ * hands them to the Listener.
+ *
+ ######################################################################*/
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+public class DuelClient implements Runnable
+{
+  public interface Listener
+    {
+      void matched(int side, int seed);
+      void opponentShot(int angle, int velocity, int gravity, int wind);
+      void opponentLeft();
+    }
+
+  SocketChannel channel;
+  Listener listener;
+  ByteBuffer out = ByteBuffer.allocate(DuelMessage.SIZE);
+  DuelMessage sent = new DuelMessage();
+  volatile int side = -1, seed;
+
+  public DuelClient(String host, int port, Listener listener) throws IOException
+    {
+      this.listener = listener;
+      channel = SocketChannel.open(new InetSocketAddress(host, port));
+      channel.socket().setTcpNoDelay(true);
+      Thread reader = new Thread(this, "DuelClient");
+      reader.setDaemon(true);
+      reader.start();
+    }
+
+  public void join(int match) throws IOException
+    {
+      sent.set(DuelMessage.JOIN, (byte)0, 0, match);
+      send();
+    }
+
+  public void shoot(int angle, int velocity, int gravity, int wind) throws IOException
+    {
+      sent.set(DuelMessage.SHOT, (byte)side, 0, 0);
+      sent.angle = angle;
+      sent.velocity = velocity;
+      sent.gravity = gravity;
+      sent.wind = wind;
+      send();
+    }
+
+  synchronized void send() throws IOException
+    {
+      out.clear();
+      sent.writeTo(out);
+      out.flip();
+      while (out.hasRemaining()) channel.write(out);
+    }
+
+  public boolean isMatched()
+    {
+      return side >= 0;
+    }
+
+  public void close()
+    {
+      try { channel.close(); } catch (IOException e) {}
+    }
+
+  public void run()
+    {
+      ByteBuffer in = ByteBuffer.allocate(DuelMessage.SIZE);
+      DuelMessage received = new DuelMessage();
+
+      try
+	{
+	  while (true)
+	    {
+	      in.clear();
+	      while (in.hasRemaining())
+		if (channel.read(in) < 0) throw new IOException("closed");
+	      in.flip();
+	      received.readFrom(in);
+
+	      switch (received.type)
+		{
+		case DuelMessage.MATCHED:
+		  seed = received.seed;
+		  side = received.player;
+		  listener.matched(side, seed);
+		  break;
+		case DuelMessage.SHOT:
+		  listener.opponentShot(received.angle, received.velocity,
+					received.gravity, received.wind);
+		  break;
+		case DuelMessage.LEFT:
+		  side = -1;
+		  listener.opponentLeft();
+		  break;
+		}
+	    }
+	}
+      catch (IOException e)
+	{
+	  if (side >= 0) listener.opponentLeft();
+	  side = -1;
+	}
+    }
+}
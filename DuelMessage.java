@@ -0,0 +1,72 @@
+package cannon;
+
+/*########################################################################
+ *
+ * DuelMessage
+ *
+ *   The one message of the two player duel protocol, always SIZE bytes:
+ *
+ *     0  type      JOIN, MATCHED, SHOT or LEFT
+ *     1  player    0 or 1, the side of the match it is about
+ *     2  angle     scrollbar values, as CannonFrame gives them
+ *     3  velocity
+ *     4  gravity   (short)
+ *     6  wind      (signed)
+ *     7  unused
+ *     8  seed      (int) MATCHED: shared by both sides of the match;
+ *                  0 otherwise
+ *    12  match     (int) match to join, 0 for any
+ *
+ *   Only the shot parameters travel; each side flies the shell itself
+ * with FixedTrajectory, which gives the same flight from the same values
+ * on every JVM.  FixedTrajectory has no gusts, so there is nothing else
+ * for the two ends to agree on.
+ *
+ ######################################################################*/
+
+import java.nio.ByteBuffer;
+
+public class DuelMessage
+{
+  public static final int SIZE = 16;
+  public static final byte JOIN = 1, MATCHED = 2, SHOT = 3, LEFT = 4;
+
+  public byte type, player;
+  public int angle, velocity, gravity, wind;
+  public int seed, match;
+
+  public void writeTo(ByteBuffer buffer)
+    {
+      buffer.put(type);
+      buffer.put(player);
+      buffer.put((byte)angle);
+      buffer.put((byte)velocity);
+      buffer.putShort((short)gravity);
+      buffer.put((byte)wind);
+      buffer.put((byte)0);
+      buffer.putInt(seed);
+      buffer.putInt(match);
+    }
+
+  public void readFrom(ByteBuffer buffer)
+    {
+      type = buffer.get();
+      player = buffer.get();
+      angle = buffer.get() & 0xff;
+      velocity = buffer.get() & 0xff;
+      gravity = buffer.getShort();
+      wind = buffer.get();
+      buffer.get();
+      seed = buffer.getInt();
+      match = buffer.getInt();
+    }
+
+  public void set(byte type, byte player, int seed, int match)
+    {
+      this.type = type;
+      this.player = player;
+      this.seed = seed;
+      this.match = match;
+      angle = velocity = gravity = wind = 0;
+    }
+}
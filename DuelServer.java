@@ -0,0 +1,238 @@
+package cannon;
+
+/*########################################################################
+ *
+ * DuelServer
+ *
+ *   Pairs up cannon players and passes their shots to each other.  One
+ * thread runs a non blocking selector over every connection, so one
+ * process can hold thousands of matches; each connection costs its
+ * channel plus a Seat with a message sized input buffer and a small
+ * output buffer.
+ *
+ *   A client sends JOIN with a match number (0 for whoever comes next).
+ * When two clients wait on the same number both get MATCHED, with
+ * their side and a seed.  After that every SHOT is sent on to the
+ * other side, and LEFT tells a player the other one has gone.
+ *
+ *   startLocal() runs a server on the loopback address in the
+ * background, for playing on one machine or in tests.
+ *
+ ######################################################################*/
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+
+public class DuelServer implements Runnable
+{
+  //##### Messages that can wait to be sent to a slow client before it
+  //##### is dropped
+  static final int BACKLOG = 8;
+
+  Selector selector;
+  ServerSocketChannel listener;
+  HashMap<Integer, Seat> waiting = new HashMap<Integer, Seat>();
+  Random seeds = new Random();
+  DuelMessage message = new DuelMessage();
+  int matches;
+
+  //##### One connected player
+  static class Seat
+    {
+      SocketChannel channel;
+      SelectionKey key;
+      ByteBuffer in = ByteBuffer.allocate(DuelMessage.SIZE);
+      ByteBuffer out = ByteBuffer.allocate(DuelMessage.SIZE * BACKLOG);
+      Seat opponent;
+      int match;
+      byte side;
+    }
+
+  public DuelServer(InetSocketAddress address) throws IOException
+    {
+      selector = Selector.open();
+      listener = ServerSocketChannel.open();
+      listener.bind(address, 1024);
+      listener.configureBlocking(false);
+      listener.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+  public static DuelServer startLocal(int port) throws IOException
+    {
+      DuelServer server = new DuelServer(
+	new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+      Thread thread = new Thread(server, "DuelServer");
+      thread.setDaemon(true);
+      thread.start();
+      return server;
+    }
+
+  public int getPort()
+    {
+      return listener.socket().getLocalPort();
+    }
+
+  public void close() throws IOException
+    {
+      selector.close();
+      listener.close();
+    }
+
+  public void run()
+    {
+      try
+	{
+	  while (selector.isOpen())
+	    {
+	      selector.select();
+	      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+	      while (keys.hasNext())
+		{
+		  SelectionKey key = keys.next();
+		  keys.remove();
+		  try
+		    {
+		      if (!key.isValid()) continue;
+		      if (key.isAcceptable()) accept();
+		      else
+			{
+			  if (key.isReadable()) read((Seat)key.attachment());
+			  if (key.isValid() && key.isWritable()) flush((Seat)key.attachment());
+			}
+		    }
+		  catch (IOException e)
+		    {
+		      if (key.attachment() != null) drop((Seat)key.attachment());
+		    }
+		}
+	    }
+	}
+      catch (IOException e) {}
+      catch (ClosedSelectorException e) {}
+    }
+
+  void accept() throws IOException
+    {
+      SocketChannel channel = listener.accept();
+      if (channel == null) return;
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      Seat seat = new Seat();
+      seat.channel = channel;
+      seat.key = channel.register(selector, SelectionKey.OP_READ, seat);
+    }
+
+  void read(Seat seat) throws IOException
+    {
+      while (true)
+	{
+	  int n = seat.channel.read(seat.in);
+	  if (n < 0) { drop(seat); return; }
+	  if (seat.in.hasRemaining()) return;
+
+	  seat.in.flip();
+	  message.readFrom(seat.in);
+	  seat.in.clear();
+	  handle(seat);
+	  if (!seat.key.isValid()) return;
+	}
+    }
+
+  void handle(Seat seat)
+    {
+      switch (message.type)
+	{
+	case DuelMessage.JOIN:
+	  if (seat.opponent != null) return;
+	  int number = message.match;
+	  //##### A seat waits on one number at a time
+	  if (waiting.get(seat.match) == seat) waiting.remove(seat.match);
+	  seat.match = number;
+	  Seat other = waiting.remove(number);
+	  if (other == null)
+	    {
+	      waiting.put(number, seat);
+	      return;
+	    }
+	  other.side = 0;
+	  seat.side = 1;
+	  int seed = seeds.nextInt();
+	  int match = ++matches;
+	  message.set(DuelMessage.MATCHED, other.side, seed, match);
+	  send(other, message);
+	  if (!other.key.isValid())
+	    {
+	      //##### The waiting one had gone; wait for the next instead
+	      waiting.put(number, seat);
+	      return;
+	    }
+	  seat.opponent = other;
+	  other.opponent = seat;
+	  message.set(DuelMessage.MATCHED, seat.side, seed, match);
+	  send(seat, message);
+	  break;
+
+	case DuelMessage.SHOT:
+	  if (seat.opponent == null) return;
+	  message.player = seat.side;
+	  send(seat.opponent, message);
+	  break;
+	}
+    }
+
+  //##### Queues m for seat and sends what it can.  A seat that cannot
+  //##### be written to is dropped here, not whoever caused the send.
+  void send(Seat seat, DuelMessage m)
+    {
+      if (seat.out.remaining() < DuelMessage.SIZE)
+	{
+	  //##### Too far behind to keep up
+	  drop(seat);
+	  return;
+	}
+      m.writeTo(seat.out);
+      try { flush(seat); }
+      catch (IOException e) { drop(seat); }
+    }
+
+  void flush(Seat seat) throws IOException
+    {
+      seat.out.flip();
+      seat.channel.write(seat.out);
+      seat.out.compact();
+      if (seat.key.isValid())
+	seat.key.interestOps(seat.out.position() > 0
+			     ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+			     : SelectionKey.OP_READ);
+    }
+
+  void drop(Seat seat)
+    {
+      if (waiting.get(seat.match) == seat) waiting.remove(seat.match);
+      seat.key.cancel();
+      try { seat.channel.close(); } catch (IOException e) {}
+
+      Seat other = seat.opponent;
+      if (other != null)
+	{
+	  seat.opponent = null;
+	  other.opponent = null;
+	  message.set(DuelMessage.LEFT, seat.side, 0, 0);
+	  send(other, message);
+	}
+    }
+
+  public static void main(String args[]) throws IOException
+    {
+      int port = (args.length > 0) ? Integer.parseInt(args[0]) : 4722;
+      DuelServer server = new DuelServer(new InetSocketAddress(port));
+      System.out.println("DuelServer listening on " + server.getPort());
+      server.run();
+    }
+}
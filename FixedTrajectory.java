@@ -0,0 +1,242 @@
+package cannon;
+
+/*########################################################################
+ *
+ * FixedTrajectory
+ *
+ *   Trajectory in 16.16 fixed point.  Position, velocity, gravity and
+ * wind are ints holding 1/65536ths of a pixel, the angle is a whole
+ * number of degrees looked up in a sine table, and a step is four
+ * integer adds.  Nothing in a flight touches floating point, so the
+ * same settings give the same flight, bit for bit, on every JVM and at
+ * every JIT tier; that is what replays, duels and firing tables need.
+ *
+ *   The flights are within a fraction of a pixel of the double ones,
+ * not identical to them: the settings are rounded to 1/65536 once at
+ * launch, where Trajectory rounds every step.  crossCheck() measures
+ * the difference over all the settings CannonFrame can give.
+ * Running the class,
+ *
+ *     java cannon.FixedTrajectory
+ *
+ * prints it, and fails if the engines are further apart than
+ * MAX_DISAGREE and MAX_DRIFT allow or the fixed point flights are not
+ * the ones recorded in FIXED_CHECKSUM.
+ *
+ *   x and y are kept up to date for drawing.  Positions must stay
+ * within +-32767 pixels.
+ *
+ ######################################################################*/
+
+public class FixedTrajectory extends Trajectory
+{
+  static final int ONE = 1 << 16;
+  static final double SCALE = 1.0 / ONE;
+
+  //##### sin of 0 to 90 whole degrees.  StrictMath gives the same bits
+  //##### everywhere, so the table is the same everywhere.
+  static final int SIN[] = new int[91];
+  static
+    {
+      for (int d = 0; d <= 90; d++)
+	SIN[d] = (int)StrictMath.round(StrictMath.sin(StrictMath.toRadians(d)) * ONE);
+    }
+
+  //##### crossCheck(600, 300)[3].  Changes only if the fixed point
+  //##### flights change, which breaks saved replays.
+  static final long FIXED_CHECKSUM = -7181353063230408930L;
+
+  //##### How far crossCheck(600, 300) may find the engines apart: shots
+  //##### that hit in one and miss in the other (402 of 6764800 when
+  //##### FIXED_CHECKSUM was recorded), and landing distance in 1/1000
+  //##### pixel (1127)
+  static final long MAX_DISAGREE = 500;
+  static final long MAX_DRIFT = 1500;
+
+  public int fx, fy, fdx, fdy;
+  int halfGravity, halfWind;
+
+  //##### Launches from scrollbar values: angle in degrees, velocity in
+  //##### fifths, gravity in thousandths and wind in 200ths of a pixel
+  public void launchValues(int angle, int velocity, int gravity, int wind,
+			   int xmax, int ymax)
+    {
+      this.xmax = xmax;
+      this.ymax = ymax;
+      this.gravity = Trajectory.gravity(gravity);
+      this.windage = Trajectory.windage(wind);
+      halfGravity = ratio(gravity, 2000);
+      halfWind = ratio(wind, 400);
+
+      int v = ratio(velocity, 5);
+      fdx = mul(v, cos(angle));
+      fdy = mul(v, sin(angle));
+      fx = MUZZLE_X << 16;
+      fy = (ymax - MUZZLE_HEIGHT) << 16;
+      steps = 0;
+      sync();
+    }
+
+  //##### Settings in cannon's units are rounded to the nearest values
+  //##### the scrollbars can give
+  public void launch(double theta, double velocity, double gravity,
+		     double windage, int xmax, int ymax)
+    {
+      launchValues((int)Math.round(theta * RADS), (int)Math.round(velocity * 5),
+		   (int)Math.round(gravity * 1000), (int)Math.round(windage * 200),
+		   xmax, ymax);
+    }
+
+  public boolean inFlight()
+    {
+      if (fx <= 0 || fx >= xmax << 16) return false;
+      if (terrain != null) return (fy >> 16) < terrain.surface(fx >> 16);
+      return fy < ymax << 16;
+    }
+
+  public void step()
+    {
+      fx += fdx;
+      fdx -= halfWind;
+      fy -= fdy;
+      fdy -= halfGravity;
+      steps++;
+      sync();
+    }
+
+  public boolean hitTarget()
+    {
+      return (fx > (xmax-43) << 16) && (fx < (xmax-27) << 16) &&
+	     (fy > (ymax-40) << 16) && (fy < (ymax-25) << 16);
+    }
+
+  //##### Trajectory.fly() on locals, with x and y set once at the end
+  public boolean fly()
+    {
+      int px = fx, py = fy, vx = fdx, vy = fdy, n = steps;
+      int right = xmax << 16, bottom = ymax << 16;
+      int hitLeft = (xmax-43) << 16, hitRight = (xmax-27) << 16;
+      int hitTop = (ymax-40) << 16, hitBottom = (ymax-25) << 16;
+      boolean hit = false;
+
+      while (px > 0 && px < right &&
+	     (terrain != null ? (py >> 16) < terrain.surface(px >> 16) : py < bottom))
+	{
+	  px += vx;
+	  vx -= halfWind;
+	  py -= vy;
+	  vy -= halfGravity;
+	  n++;
+	  if (px > hitLeft && px < hitRight && py > hitTop && py < hitBottom)
+	    {
+	      hit = true;
+	      break;
+	    }
+	}
+      fx = px; fy = py; fdx = vx; fdy = vy; steps = n;
+      sync();
+      return hit;
+    }
+
+  public void stop()
+    {
+      fx = 0;
+      sync();
+    }
+
+  void sync()
+    {
+      x = fx * SCALE;
+      y = fy * SCALE;
+    }
+
+  //##### sin and cos of any whole number of degrees
+  public static int sin(int degrees)
+    {
+      int d = ((degrees % 360) + 360) % 360;
+      if (d <= 90) return SIN[d];
+      if (d <= 180) return SIN[180 - d];
+      if (d <= 270) return -SIN[d - 180];
+      return -SIN[360 - d];
+    }
+
+  public static int cos(int degrees)
+    {
+      return sin(degrees + 90);
+    }
+
+  //##### a * b for two fixed point numbers, rounded
+  static int mul(int a, int b)
+    {
+      return (int)(((long)a * b + (ONE >> 1)) >> 16);
+    }
+
+  //##### num / den as a fixed point number, rounded half away from zero
+  static int ratio(int num, int den)
+    {
+      long n = (long)num << 16;
+      return (int)((n >= 0) ? (n + den / 2) / den : (n - den / 2) / den);
+    }
+
+  //##### Flies every setting CannonFrame allows with both engines.
+  //##### Returns { settings, hit/miss disagreements, largest distance
+  //##### between the two at landing in 1/1000 pixel, checksum of the
+  //##### fixed flights }.  The checksum must be the same on every JVM.
+  public static long[] crossCheck(int xmax, int ymax)
+    {
+      Trajectory real = new Trajectory();
+      FixedTrajectory fixed = new FixedTrajectory();
+      long settings = 0, disagree = 0, checksum = 17;
+      double drift = 0;
+
+      for (int a = 1; a <= 80; a++)
+	for (int v = 1; v <= 28; v++)
+	  for (int g = 40; g <= 190; g++)
+	    for (int w = -10; w <= 9; w++)
+	      {
+		real.launch(angle(a), velocity(v), gravity(g), windage(w), xmax, ymax);
+		fixed.launchValues(a, v, g, w, xmax, ymax);
+		boolean realHit = real.fly();
+		boolean fixedHit = fixed.fly();
+
+		settings++;
+		if (realHit != fixedHit) disagree++;
+		else if (!realHit && real.getSteps() == fixed.getSteps())
+		  drift = Math.max(drift, Math.max(Math.abs(real.x - fixed.x),
+						   Math.abs(real.y - fixed.y)));
+		checksum = checksum * 31 + fixed.fx;
+		checksum = checksum * 31 + fixed.fy;
+		checksum = checksum * 31 + fixed.steps;
+	      }
+      return new long[] { settings, disagree, Math.round(drift * 1000), checksum };
+    }
+
+  public static void main(String args[])
+    {
+      long result[] = crossCheck(600, 300);
+      System.out.println(result[0] + " settings, " + result[1]
+			 + " hit or miss differently, landings up to "
+			 + result[2] / 1000.0 + " pixels apart");
+      boolean ok = true;
+      if (result[1] > MAX_DISAGREE)
+	{
+	  System.out.println("too many hit or miss differently, at most "
+			     + MAX_DISAGREE + " allowed");
+	  ok = false;
+	}
+      if (result[2] > MAX_DRIFT)
+	{
+	  System.out.println("landings too far apart, at most "
+			     + MAX_DRIFT / 1000.0 + " pixels allowed");
+	  ok = false;
+	}
+      if (result[3] != FIXED_CHECKSUM)
+	{
+	  System.out.println("fixed point flights changed: checksum "
+			     + result[3] + ", expected " + FIXED_CHECKSUM);
+	  ok = false;
+	}
+      if (!ok) System.exit(1);
+      System.out.println("fixed point flights as recorded");
+    }
+}
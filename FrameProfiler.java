@@ -0,0 +1,157 @@
+package perf;
+
+/*########################################################################
+ *
+ * FrameProfiler
+ *
+ *   Times the phases of a frame.  Each phase gets a PhaseHistogram;
+ * the histograms can be read through JMX (see FrameProfilerMBean) and
+ * every sample is also sent as a PhaseEvent to Flight Recorder when a
+ * recording has that event enabled.
+ *
+ *   Profiling is off unless the perf.enabled system property is true or
+ * it is switched on through the profiler's own MBean; each profiler is
+ * switched separately.  When it is off, begin() and end() only read a
+ * volatile flag and return 0, so the calls can stay in the paint code
+ * for good.
+ *
+ *   Typical use chains the phases of a frame:
+ *
+ *     long t = profiler.begin();
+ *     drawScene(g);
+ *     t = profiler.end(SCENE, t);
+ *     drawHud(g);
+ *     profiler.end(HUD, t);
+ *
+ ######################################################################*/
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.EventType;
+
+public class FrameProfiler implements FrameProfilerMBean
+{
+  //##### Asked before each sample, so no PhaseEvent is made unless a
+  //##### recording has the event switched on.
+  static final EventType PHASE_EVENT = EventType.getEventType(PhaseEvent.class);
+
+  volatile boolean enabled = Boolean.getBoolean("perf.enabled");
+
+  String name;
+  String phases[];
+  PhaseHistogram histograms[];
+
+  public FrameProfiler(String name, String phases[])
+    {
+      this.name = name;
+      this.phases = phases;
+      histograms = new PhaseHistogram[phases.length];
+      for (int i = 0; i < phases.length; i++)
+	histograms[i] = new PhaseHistogram();
+      register();
+    }
+
+  //##### Make the profiler visible to JMX.  Not being allowed to (applet
+  //##### sandbox, name already taken) only loses the JMX view.
+  void register()
+    {
+      try
+	{
+	  MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	  ObjectName objectName =
+	    new ObjectName("perf:type=FrameProfiler,name=" + ObjectName.quote(name));
+	  if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+	  server.registerMBean(this, objectName);
+	}
+      catch (Exception e) {}
+    }
+
+  public long begin()
+    {
+      return enabled ? System.nanoTime() : 0;
+    }
+
+  //##### Records the time since start against the phase and returns the
+  //##### current time, to be used as the start of the next phase.
+  public long end(int phase, long start)
+    {
+      if (start == 0 || !enabled) return 0;
+      long now = System.nanoTime();
+      record(phase, now - start);
+      return now;
+    }
+
+  public void record(int phase, long nanos)
+    {
+      if (!enabled) return;
+      histograms[phase].record(nanos);
+
+      if (PHASE_EVENT.isEnabled())
+	{
+	  PhaseEvent event = new PhaseEvent();
+	  event.profiler = name;
+	  event.phase = phases[phase];
+	  event.nanos = nanos;
+	  event.commit();
+	}
+    }
+
+  public PhaseHistogram getHistogram(int phase)
+    {
+      return histograms[phase];
+    }
+
+  //##### FrameProfilerMBean
+
+  public boolean isEnabled()
+    {
+      return enabled;
+    }
+
+  public void setEnabled(boolean on)
+    {
+      enabled = on;
+    }
+
+  public String[] getPhaseNames()
+    {
+      return phases.clone();
+    }
+
+  public long[] getCounts()
+    {
+      long result[] = new long[phases.length];
+      for (int i = 0; i < phases.length; i++) result[i] = histograms[i].getCount();
+      return result;
+    }
+
+  public double[] getMeanMillis()
+    {
+      double result[] = new double[phases.length];
+      for (int i = 0; i < phases.length; i++)
+	result[i] = histograms[i].getMean() / 1e6;
+      return result;
+    }
+
+  public double[] getMaxMillis()
+    {
+      double result[] = new double[phases.length];
+      for (int i = 0; i < phases.length; i++)
+	result[i] = histograms[i].getMax() / 1e6;
+      return result;
+    }
+
+  public double[] getPercentileMillis(double percent)
+    {
+      double result[] = new double[phases.length];
+      for (int i = 0; i < phases.length; i++)
+	result[i] = histograms[i].getPercentile(percent) / 1e6;
+      return result;
+    }
+
+  public void reset()
+    {
+      for (int i = 0; i < phases.length; i++) histograms[i].reset();
+    }
+}
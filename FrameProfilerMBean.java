@@ -0,0 +1,24 @@
+package perf;
+
+/*########################################################################
+ *
+ * FrameProfilerMBean
+ *
+ *   JMX view of a FrameProfiler.  Array results are indexed the same way
+ * as getPhaseNames().
+ *
+ ######################################################################*/
+
+public interface FrameProfilerMBean
+{
+  boolean isEnabled();
+  void setEnabled(boolean on);
+
+  String[] getPhaseNames();
+  long[] getCounts();
+  double[] getMeanMillis();
+  double[] getMaxMillis();
+  double[] getPercentileMillis(double percent);
+
+  void reset();
+}
@@ -0,0 +1,357 @@
+//==============================================================================
+//  Filename:       GameServer.java
+//  Purpose:        Hosts many independent headless game sessions in one JVM,
+//                  for bots and automated play testing.  Every connection is
+//                  one session with its own thread and its own game state: a
+//                  HeadlessGame for DeathTrap, or a shell and the four cannon
+//                  settings for cannon.  On a Java runtime with virtual
+//                  threads each session runs on one; otherwise it runs on a
+//                  daemon thread with a small stack.  Only the virtual
+//                  threads make tens of thousands of sessions practical; on
+//                  Java 17 every session is a platform thread, and the
+//                  operating system's thread limit caps the sessions.
+//
+//  Protocol:       Plain text lines over a socket bound to the loopback
+//                  address.  The first line picks the game, "DEATHTRAP" or
+//                  "CANNON"; every command gets exactly one reply line.
+//
+//                  DeathTrap:  KEY code     press a key (java.awt.event.KeyEvent
+//                                           code), reply STATE line
+//                              TICK [n]     run n ticks (default 1, at most
+//                                           MAX_TICKS), reply STATE
+//                              STATE        reply "STATE state level lives
+//                                           timeLeft x y clock"
+//                  Cannon:     ANGLE n, VELOCITY n, GRAVITY n, WIND n
+//                                           scrollbar values as in CannonFrame,
+//                                           within the scrollbar ranges
+//                                           (1..80, 1..28, 40..190, -10..9),
+//                                           reply OK
+//                              FIRE         reply "HIT steps" or "MISS steps";
+//                                           a flight stops after MAX_STEPS
+//                  Both:       QUIT         reply BYE and close the session
+//
+//  Usage:          java GameServer [port]
+//==============================================================================
+
+import java.awt.Point;
+import java.io.*;
+import java.net.*;
+import java.util.StringTokenizer;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import cannon.Trajectory;
+
+public class GameServer implements Runnable
+{
+    static final int        DEFAULT_PORT = 4721;
+
+    //--------------------------------------------------------------------------
+    //  Stack size asked for when sessions run on platform threads.  Sessions
+    //  only parse short lines and step the game, so this is plenty.
+    //--------------------------------------------------------------------------
+    static final long       SESSION_STACK = 64 * 1024;
+
+    //--------------------------------------------------------------------------
+    //  Size of the per session read and write buffers.
+    //--------------------------------------------------------------------------
+    static final int        BUFFER_SIZE = 256;
+
+    //--------------------------------------------------------------------------
+    //  Most ticks one TICK command may run, so one session cannot keep its
+    //  thread busy for long.
+    //--------------------------------------------------------------------------
+    static final int        MAX_TICKS = 10000;
+
+    //--------------------------------------------------------------------------
+    //  The cannon settings and the range of each, those of the CannonFrame
+    //  scrollbars (the largest value a scrollbar gives is its maximum less
+    //  its visible amount).  Outside them a shell can stay up for ever: with
+    //  no gravity, with gravity pushing it up, or fired straight up with no
+    //  speed across.  Even inside them no flight may take more than
+    //  MAX_STEPS steps.
+    //--------------------------------------------------------------------------
+    static final String     SETTINGS[] = { "ANGLE", "VELOCITY", "GRAVITY", "WIND" };
+    static final int        SETTING_MIN[] = { 1, 1, 40, -10 };
+    static final int        SETTING_MAX[] = { 80, 28, 190, 9 };
+    static final int        MAX_STEPS = 10000;
+
+    private ServerSocket    listener;
+    private ThreadFactory   sessionThreads;
+    private AtomicInteger   sessions;       //sessions currently open.
+
+    public GameServer(int port) throws IOException
+    {
+        listener = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        sessionThreads = createThreadFactory();
+        sessions = new AtomicInteger();
+    }
+
+    //--------------------------------------------------------------------------
+    //  run()
+    //
+    //  Accepts connections until the server socket is closed.
+    //
+    //--------------------------------------------------------------------------
+    public void run()
+    {
+        while(!listener.isClosed())
+        {
+            try
+            {
+                final Socket socket = listener.accept();
+                sessionThreads.newThread(new Runnable()
+                {
+                    public void run()
+                    {
+                        serve(socket);
+                    }
+                }).start();
+            }
+            catch(IOException e)
+            {
+                if(!listener.isClosed())
+                {
+                    System.err.println("GameServer: " + e);
+                }
+            }
+        }
+    }
+
+    public void close() throws IOException
+    {
+        listener.close();
+    }
+
+    public int getPort()
+    {
+        return listener.getLocalPort();
+    }
+
+    public int getSessionCount()
+    {
+        return sessions.get();
+    }
+
+    //--------------------------------------------------------------------------
+    //  serve()
+    //
+    //  Runs one session to the end.
+    //
+    //--------------------------------------------------------------------------
+    private void serve(Socket socket)
+    {
+        sessions.incrementAndGet();
+        try
+        {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), "US-ASCII"), BUFFER_SIZE);
+            Writer out = new BufferedWriter(
+                new OutputStreamWriter(socket.getOutputStream(), "US-ASCII"), BUFFER_SIZE);
+
+            String game = in.readLine();
+            if("DEATHTRAP".equals(game))
+            {
+                serveDeathTrap(in, out);
+            }
+            else if("CANNON".equals(game))
+            {
+                serveCannon(in, out);
+            }
+            else if(game != null)
+            {
+                reply(out, "ERROR unknown game " + game);
+            }
+        }
+        catch(IOException e)
+        {
+            //------------------------------------------------------------------
+            //  The client went away; the session simply ends.
+            //------------------------------------------------------------------
+        }
+        finally
+        {
+            sessions.decrementAndGet();
+            try
+            {
+                socket.close();
+            }
+            catch(IOException e)
+            {
+            }
+        }
+    }
+
+    private void serveDeathTrap(BufferedReader in, Writer out) throws IOException
+    {
+        HeadlessGame game = new HeadlessGame();
+        String line;
+
+        while((line = in.readLine()) != null)
+        {
+            StringTokenizer words = new StringTokenizer(line);
+            String command = words.hasMoreTokens() ? words.nextToken() : "";
+
+            try
+            {
+                if(command.equals("KEY"))
+                {
+                    game.keyPressed(Integer.parseInt(words.nextToken()));
+                }
+                else if(command.equals("TICK"))
+                {
+                    int ticks = words.hasMoreTokens()
+                                ? Integer.parseInt(words.nextToken()) : 1;
+                    if(ticks < 0 || ticks > MAX_TICKS)
+                    {
+                        reply(out, "ERROR at most " + MAX_TICKS + " ticks");
+                        continue;
+                    }
+                    for(int i = 0; i < ticks; i++)
+                    {
+                        game.tick();
+                    }
+                }
+                else if(command.equals("QUIT"))
+                {
+                    reply(out, "BYE");
+                    return;
+                }
+                else if(!command.equals("STATE"))
+                {
+                    reply(out, "ERROR unknown command " + command);
+                    continue;
+                }
+            }
+            catch(RuntimeException e)
+            {
+                reply(out, "ERROR " + line);
+                continue;
+            }
+
+            Point position = game.getMap().getPlayerPosition();
+            reply(out, "STATE " + game.getState() +
+                       " " + game.getMap().getLevel() +
+                       " " + game.getLives() +
+                       " " + game.getTimeLeft() +
+                       " " + position.x +
+                       " " + position.y +
+                       " " + game.getClock());
+        }
+    }
+
+    private void serveCannon(BufferedReader in, Writer out) throws IOException
+    {
+        //----------------------------------------------------------------------
+        //  Same starting settings as the cannon applet.
+        //----------------------------------------------------------------------
+        int settings[] = { 60, 15, 98, 0 };     //angle, velocity, gravity, wind.
+        Trajectory shell = new Trajectory();
+        String line;
+
+        while((line = in.readLine()) != null)
+        {
+            StringTokenizer words = new StringTokenizer(line);
+            String command = words.hasMoreTokens() ? words.nextToken() : "";
+            int setting = SETTINGS.length - 1;
+
+            while(setting >= 0 && !command.equals(SETTINGS[setting]))
+            {
+                setting--;
+            }
+
+            try
+            {
+                if(setting >= 0)
+                {
+                    int value = Integer.parseInt(words.nextToken());
+                    if(value < SETTING_MIN[setting] || value > SETTING_MAX[setting])
+                    {
+                        reply(out, "ERROR " + command + " must be " +
+                                   SETTING_MIN[setting] + " to " +
+                                   SETTING_MAX[setting]);
+                        continue;
+                    }
+                    settings[setting] = value;
+                }
+                else if(command.equals("FIRE"))
+                {
+                    shell.launch(Trajectory.angle(settings[0]),
+                                 Trajectory.velocity(settings[1]),
+                                 Trajectory.gravity(settings[2]),
+                                 Trajectory.windage(settings[3]),
+                                 600, 300);
+                    boolean hit = shell.fly(MAX_STEPS);
+                    reply(out, (hit ? "HIT " : "MISS ") + shell.getSteps());
+                    continue;
+                }
+                else if(command.equals("QUIT"))
+                {
+                    reply(out, "BYE");
+                    return;
+                }
+                else
+                {
+                    reply(out, "ERROR unknown command " + command);
+                    continue;
+                }
+            }
+            catch(RuntimeException e)
+            {
+                reply(out, "ERROR " + line);
+                continue;
+            }
+            reply(out, "OK");
+        }
+    }
+
+    private static void reply(Writer out, String line) throws IOException
+    {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+    }
+
+    //--------------------------------------------------------------------------
+    //  createThreadFactory()
+    //
+    //  Uses Thread.ofVirtual() when the runtime has it.  It is looked up by
+    //  reflection so the server still runs on older runtimes, where each
+    //  session gets a small stack daemon thread instead.
+    //
+    //--------------------------------------------------------------------------
+    static ThreadFactory createThreadFactory()
+    {
+        try
+        {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class)
+                                  .invoke(builder, "session-", 0L);
+            return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+        }
+        catch(Exception e)
+        {
+            final AtomicInteger count = new AtomicInteger();
+            return new ThreadFactory()
+            {
+                public Thread newThread(Runnable task)
+                {
+                    Thread thread = new Thread(null, task,
+                                               "session-" + count.getAndIncrement(),
+                                               SESSION_STACK);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+        }
+    }
+
+    public static void main(String args[]) throws IOException
+    {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        GameServer server = new GameServer(port);
+        System.out.println("GameServer listening on " + server.getPort());
+        server.run();
+    }
+}
@@ -0,0 +1,256 @@
+//==============================================================================
+//  Filename:       GameSnapshot.java
+//  Purpose:        Small fixed size binary record of a DeathTrap game: the
+//                  game state, level, player position and status, the level
+//                  timer and the fade, door and game over animation values.
+//                  It is written field by field into an NIO buffer, with no
+//                  reflection or object serialization, so it is cheap enough
+//                  to take every tick.  One snapshot object is meant to be
+//                  reused; nothing is allocated by writeTo() or readFrom().
+//
+//  Format:         Version 1 is SIZE bytes, big endian, in the order of the
+//                  fields below, behind MAGIC and the version byte.  Values a
+//                  source does not know are stored as UNKNOWN.
+//==============================================================================
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+public class GameSnapshot
+{
+    static final int        MAGIC = 0x44545331;     //"DTS1"
+    static final byte       VERSION = 1;
+    static final int        UNKNOWN = -1;
+    static final int        DOOR_POINTS = 3;
+
+    //--------------------------------------------------------------------------
+    //  Size of a version 1 record in bytes.
+    //--------------------------------------------------------------------------
+    static final int        SIZE = 4 + 1            //magic, version
+                                 + 1 + 1 + 1        //state, fade direction, flags
+                                 + 2 + 2 + 2        //level, player x, player y
+                                 + 1 + 1 + 4        //status, lives, health
+                                 + 4 + 8 + 8        //time left, clock, ticks
+                                 + 2 + 4 + 2 + 2    //game over counter, alpha, x, y
+                                 + 4 * DOOR_POINTS * 2;
+
+    static final int        FLAG_LEVEL_FADE = 1;
+
+    //--------------------------------------------------------------------------
+    //  Game.
+    //--------------------------------------------------------------------------
+    int                     gameState;
+    int                     level;
+    int                     playerX, playerY;
+    int                     status;         //Player status.
+    int                     lives;
+    int                     health;
+    int                     timeLeft;       //milliseconds left on the maze.
+    long                    clock;          //virtual time, if headless.
+    long                    ticks;
+
+    //--------------------------------------------------------------------------
+    //  Presentation.
+    //--------------------------------------------------------------------------
+    int                     alphaDirection;
+    boolean                 levelFade;
+    int                     gameOverAnimationCounter;
+    float                   alpha;
+    int                     x, y;           //game over image position.
+    int                     leftDoorxPoints[] = new int[DOOR_POINTS];
+    int                     leftDooryPoints[] = new int[DOOR_POINTS];
+    int                     rightDoorxPoints[] = new int[DOOR_POINTS];
+    int                     rightDooryPoints[] = new int[DOOR_POINTS];
+
+    public GameSnapshot()
+    {
+        clear();
+    }
+
+    //--------------------------------------------------------------------------
+    //  clear()
+    //
+    //  Marks every value unknown.
+    //
+    //--------------------------------------------------------------------------
+    public void clear()
+    {
+        gameState = level = playerX = playerY = UNKNOWN;
+        status = lives = health = timeLeft = UNKNOWN;
+        clock = ticks = UNKNOWN;
+        alphaDirection = gameOverAnimationCounter = x = y = UNKNOWN;
+        levelFade = false;
+        alpha = 0f;
+        for(int i = 0; i < DOOR_POINTS; i++)
+        {
+            leftDoorxPoints[i] = leftDooryPoints[i] = 0;
+            rightDoorxPoints[i] = rightDooryPoints[i] = 0;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  writeTo()
+    //
+    //  Puts the record at the buffer's position, which moves on by SIZE.
+    //
+    //--------------------------------------------------------------------------
+    public void writeTo(ByteBuffer buffer)
+    {
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.put((byte)gameState);
+        buffer.put((byte)alphaDirection);
+        buffer.put((byte)(levelFade ? FLAG_LEVEL_FADE : 0));
+        buffer.putShort((short)level);
+        buffer.putShort((short)playerX);
+        buffer.putShort((short)playerY);
+        buffer.put((byte)status);
+        buffer.put((byte)lives);
+        buffer.putInt(health);
+        buffer.putInt(timeLeft);
+        buffer.putLong(clock);
+        buffer.putLong(ticks);
+        buffer.putShort((short)gameOverAnimationCounter);
+        buffer.putFloat(alpha);
+        buffer.putShort((short)x);
+        buffer.putShort((short)y);
+        for(int i = 0; i < DOOR_POINTS; i++)
+        {
+            buffer.putShort((short)leftDoorxPoints[i]);
+            buffer.putShort((short)leftDooryPoints[i]);
+            buffer.putShort((short)rightDoorxPoints[i]);
+            buffer.putShort((short)rightDooryPoints[i]);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  readFrom()
+    //
+    //  Reads a record written by writeTo() at the buffer's position.  Throws
+    //  IllegalArgumentException if it is not a snapshot of a known version.
+    //
+    //--------------------------------------------------------------------------
+    public void readFrom(ByteBuffer buffer)
+    {
+        if(buffer.remaining() < SIZE || buffer.getInt() != MAGIC)
+        {
+            throw new IllegalArgumentException("not a DeathTrap snapshot");
+        }
+        int version = buffer.get();
+        if(version != VERSION)
+        {
+            throw new IllegalArgumentException("unknown snapshot version " + version);
+        }
+
+        gameState = buffer.get();
+        alphaDirection = buffer.get();
+        levelFade = (buffer.get() & FLAG_LEVEL_FADE) != 0;
+        level = buffer.getShort();
+        playerX = buffer.getShort();
+        playerY = buffer.getShort();
+        status = buffer.get();
+        lives = buffer.get();
+        health = buffer.getInt();
+        timeLeft = buffer.getInt();
+        clock = buffer.getLong();
+        ticks = buffer.getLong();
+        gameOverAnimationCounter = buffer.getShort();
+        alpha = buffer.getFloat();
+        x = buffer.getShort();
+        y = buffer.getShort();
+        for(int i = 0; i < DOOR_POINTS; i++)
+        {
+            leftDoorxPoints[i] = buffer.getShort();
+            leftDooryPoints[i] = buffer.getShort();
+            rightDoorxPoints[i] = buffer.getShort();
+            rightDooryPoints[i] = buffer.getShort();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  save()
+    //
+    //  Writes the snapshot to a file, for crash recovery checkpoints.  The
+    //  buffer is reused between calls by passing it back in.
+    //
+    //--------------------------------------------------------------------------
+    public void save(File file, ByteBuffer buffer) throws IOException
+    {
+        buffer.clear();
+        writeTo(buffer);
+        buffer.flip();
+        write(file, buffer);
+    }
+
+    //--------------------------------------------------------------------------
+    //  write()
+    //
+    //  Writes the bytes left in a buffer filled by writeTo() to a file.  They
+    //  go to a temporary file beside it first, which is forced to the disk
+    //  and then renamed over the file, so a crash part way through leaves the
+    //  old checkpoint whole instead of a torn one.
+    //
+    //--------------------------------------------------------------------------
+    public static void write(File file, ByteBuffer buffer) throws IOException
+    {
+        File temporary = new File(file.getPath() + ".tmp");
+
+        FileChannel channel = new FileOutputStream(temporary).getChannel();
+        try
+        {
+            while(buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        finally
+        {
+            channel.close();
+        }
+
+        Files.move(temporary.toPath(), file.toPath(),
+                   StandardCopyOption.ATOMIC_MOVE,
+                   StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    //--------------------------------------------------------------------------
+    //  load()
+    //
+    //  Reads a snapshot saved by save().
+    //
+    //--------------------------------------------------------------------------
+    public void load(File file, ByteBuffer buffer) throws IOException
+    {
+        buffer.clear();
+
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try
+        {
+            while(buffer.position() < SIZE && channel.read(buffer) >= 0)
+            {
+            }
+        }
+        finally
+        {
+            channel.close();
+        }
+
+        buffer.flip();
+        readFrom(buffer);
+    }
+
+    //--------------------------------------------------------------------------
+    //  allocateBuffer()
+    //
+    //  Returns a buffer big enough for one snapshot.
+    //
+    //--------------------------------------------------------------------------
+    public static ByteBuffer allocateBuffer()
+    {
+        return ByteBuffer.allocateDirect(SIZE);
+    }
+}
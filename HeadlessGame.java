@@ -0,0 +1,485 @@
+//==============================================================================
+//  Filename:       HeadlessGame.java
+//  Purpose:        Runs the DeathTrap state machine without an applet or a
+//                  display.  Input comes from a recorded InputLog and time
+//                  comes from a virtual clock that advances by the same tick
+//                  the applet sleeps in each state, so a replay runs as fast
+//                  as the CPU allows and gives the same result every time.
+//
+//  Notes:          This is a stub of the rules, not DeathTrap's own.  The
+//                  maze moves go through the real Map, but the timer and the
+//                  lives are kept by Player, which is not in this tree, so
+//                  STUB_LIVES and STUB_LEVEL_TIME are guesses at what Player
+//                  does.  Only GAME_OVER_FRAMES is taken from DeathTrap.  A
+//                  replay here shows that the stub is deterministic; it says
+//                  nothing about how the applet would have scored the log
+//                  until Player takes over the timer and lives.
+//
+//  Usage:          java HeadlessGame [-repeat n] log...
+//                  Replays the golden logs built in and checks they end in
+//                  their known state, then replays each log given n times on
+//                  all processors, checks every run of a log ends the same
+//                  way and prints the results.
+//==============================================================================
+
+import java.awt.Point;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class HeadlessGame
+{
+    //--------------------------------------------------------------------------
+    //  Rules of the game.  The first two stand in for Player; the frames of
+    //  the game over animation are the count DeathTrap.resetDoorPoints() sets.
+    //--------------------------------------------------------------------------
+    static final int        STUB_LIVES = 3;
+    static final long       STUB_LEVEL_TIME = 30 * 1000;
+    static final int        GAME_OVER_FRAMES = 40;
+
+    //--------------------------------------------------------------------------
+    //  Status recorded in the history while lives are left and once they are
+    //  gone, standing in for Player.getStatus().
+    //--------------------------------------------------------------------------
+    static final int        STUB_ALIVE = 0;
+    static final int        STUB_DEAD = 1;
+
+    private Map             map;
+    private int             gameState;
+    private int             lives;
+    private long            timeLeft;       //milliseconds left on this maze.
+    private int             gameOverCounter;
+    private long            clock;          //virtual time in milliseconds.
+    private long            ticks;          //ticks run so far.
+    private long            checksum;       //running hash of every tick.
+    private TickHistory     history;        //running ticks, if recording.
+
+    public HeadlessGame()
+    {
+        map = new Map();
+        setState(DeathTrap.BEGINNING);
+    }
+
+    //--------------------------------------------------------------------------
+    //  replay()
+    //
+    //  Plays the whole log, then keeps ticking until the game has come back
+    //  to a resting state (the beginning or the end screen).
+    //
+    //--------------------------------------------------------------------------
+    public void replay(InputLog log)
+    {
+        int next = 0;
+        int events = log.size();
+
+        while(next < events ||
+              (gameState != DeathTrap.BEGINNING && gameState != DeathTrap.END))
+        {
+            while(next < events && log.getTime(next) <= clock)
+            {
+                keyPressed(log.getKey(next++));
+            }
+            tick();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  keyPressed()
+    //
+    //  Same handling as DeathTrap.MazeKeyAdapter, minus the sounds.
+    //
+    //--------------------------------------------------------------------------
+    public void keyPressed(int keyCode)
+    {
+        switch(gameState)
+        {
+            case DeathTrap.BEGINNING:
+                setState(DeathTrap.RUNNING);
+                break;
+            case DeathTrap.RUNNING:
+                if(keyCode == KeyEvent.VK_ESCAPE)
+                {
+                    setState(DeathTrap.GAME_OVER);
+                }
+                else if(keyCode != KeyEvent.VK_SPACE)
+                {
+                    map.doMove(keyCode);
+                }
+                break;
+            case DeathTrap.END:
+                switch(keyCode)
+                {
+                    case KeyEvent.VK_SPACE:
+                    case KeyEvent.VK_ESCAPE:
+                    case KeyEvent.VK_ENTER:
+                        setState(DeathTrap.BEGINNING);
+                }
+                break;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  tick()
+    //
+    //  One pass of what DeathTrap.paint() does for the current state, then
+    //  the clock moves on by the tick of that state.
+    //
+    //--------------------------------------------------------------------------
+    public void tick()
+    {
+        long tickLength = DeathTrap.TICK_MILLIS[gameState];
+
+        switch(gameState)
+        {
+            case DeathTrap.RUNNING:
+                //--------------------------------------------------------------
+                //  Running out of time on a maze costs a life.
+                //--------------------------------------------------------------
+                timeLeft -= tickLength;
+                if(timeLeft <= 0)
+                {
+                    timeLeft = STUB_LEVEL_TIME;
+                    if(--lives <= 0)
+                    {
+                        setState(DeathTrap.GAME_OVER);
+                        break;
+                    }
+                }
+
+                if(map.mazeSolved())
+                {
+                    timeLeft = STUB_LEVEL_TIME;
+                    if(!map.nextMap())
+                    {
+                        setState(DeathTrap.GAME_OVER);
+                    }
+                }
+                break;
+            case DeathTrap.GAME_OVER:
+                if(gameOverCounter <= 0)
+                {
+                    setState(DeathTrap.END);
+                }
+                --gameOverCounter;
+                break;
+        }
+
+        clock += tickLength;
+        ticks++;
+        hashTick();
+
+        if(history != null && gameState == DeathTrap.RUNNING)
+        {
+            Point position = map.getPlayerPosition();
+            history.record(position.x, position.y,
+                           lives > 0 ? STUB_ALIVE : STUB_DEAD,
+                           (int)(STUB_LEVEL_TIME - timeLeft), map.getLevel());
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  setState()
+    //
+    //  Mirrors DeathTrap.setState().
+    //
+    //--------------------------------------------------------------------------
+    public void setState(int newState)
+    {
+        switch(newState)
+        {
+            case DeathTrap.BEGINNING:
+            case DeathTrap.END:
+                resetGame();
+                break;
+        }
+        gameState = newState;
+    }
+
+    private void resetGame()
+    {
+        lives = STUB_LIVES;
+        timeLeft = STUB_LEVEL_TIME;
+        gameOverCounter = GAME_OVER_FRAMES;
+        map.setBeginningState(0);
+    }
+
+    //--------------------------------------------------------------------------
+    //  hashTick()
+    //
+    //  Folds the state after a tick into the checksum (FNV-1a), so two runs
+    //  only share a checksum if they went through the same states.
+    //
+    //--------------------------------------------------------------------------
+    private void hashTick()
+    {
+        Point position = map.getPlayerPosition();
+
+        checksum = mix(checksum, gameState);
+        checksum = mix(checksum, map.getLevel());
+        checksum = mix(checksum, lives);
+        checksum = mix(checksum, (int)timeLeft);
+        checksum = mix(checksum, position.x);
+        checksum = mix(checksum, position.y);
+    }
+
+    private static long mix(long hash, int value)
+    {
+        if(hash == 0)
+        {
+            hash = 0xcbf29ce484222325L;
+        }
+        for(int i = 0; i < 4; i++)
+        {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    //--------------------------------------------------------------------------
+    //  capture()
+    //
+    //  Fills the snapshot with the state of this game.
+    //
+    //--------------------------------------------------------------------------
+    public void capture(GameSnapshot snapshot)
+    {
+        Point position = map.getPlayerPosition();
+
+        snapshot.clear();
+        snapshot.gameState = gameState;
+        snapshot.level = map.getLevel();
+        snapshot.playerX = position.x;
+        snapshot.playerY = position.y;
+        snapshot.lives = lives;
+        snapshot.timeLeft = (int)timeLeft;
+        snapshot.clock = clock;
+        snapshot.ticks = ticks;
+        snapshot.gameOverAnimationCounter = gameOverCounter;
+    }
+
+    //--------------------------------------------------------------------------
+    //  restore()
+    //
+    //  Puts the game back to a captured state.  The map is moved to the
+    //  captured level (setBeginningState() takes the zero based index of the
+    //  level getLevel() counts from one); Map has no way to place the player,
+    //  so the player starts that level from its beginning.
+    //
+    //--------------------------------------------------------------------------
+    public void restore(GameSnapshot snapshot)
+    {
+        if(snapshot.level != map.getLevel())
+        {
+            map.setBeginningState(snapshot.level - 1);
+        }
+        gameState = snapshot.gameState;
+        lives = snapshot.lives;
+        timeLeft = snapshot.timeLeft;
+        clock = snapshot.clock;
+        ticks = snapshot.ticks;
+        gameOverCounter = snapshot.gameOverAnimationCounter;
+    }
+
+    //--------------------------------------------------------------------------
+    //  setHistory()
+    //
+    //  Records every running tick into the given history, or stops recording
+    //  if it is null.  As in DeathTrap the timer field holds the milliseconds
+    //  spent on the level; the status field holds STUB_ALIVE or STUB_DEAD,
+    //  since there is no Player to ask.
+    //
+    //--------------------------------------------------------------------------
+    public void setHistory(TickHistory history)
+    {
+        this.history = history;
+    }
+
+    public Map getMap()
+    {
+        return map;
+    }
+
+    public int getState()
+    {
+        return gameState;
+    }
+
+    public int getLives()
+    {
+        return lives;
+    }
+
+    public long getTimeLeft()
+    {
+        return timeLeft;
+    }
+
+    public long getClock()
+    {
+        return clock;
+    }
+
+    public long getTicks()
+    {
+        return ticks;
+    }
+
+    public long getChecksum()
+    {
+        return checksum;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Golden replays: each log is a list of (milliseconds, key code) pairs,
+    //  with the state the game must end in after replaying it.  They only use
+    //  the start and escape keys, so they end the same way whatever maze Map
+    //  loads.
+    //
+    //  Idle:    start, then no moves; the stub timer runs out three times
+    //           (3 x 300 running ticks of 100 ms), then 41 game over ticks of
+    //           5 ms reach the end screen.
+    //  Escape:  start, escape after five seconds (50 running ticks), then the
+    //           same 41 game over ticks.
+    //--------------------------------------------------------------------------
+    static final long       GOLDEN_LOGS[][] =
+    {
+        { 0, KeyEvent.VK_ENTER },
+        { 0, KeyEvent.VK_ENTER, 5000, KeyEvent.VK_ESCAPE },
+    };
+    static final String     GOLDEN_NAMES[] = { "idle", "escape" };
+
+    //--------------------------------------------------------------------------
+    //  Final state of each golden log: state, level, lives, ticks, clock.
+    //--------------------------------------------------------------------------
+    static final long       GOLDEN_ENDS[][] =
+    {
+        { DeathTrap.END, 1, STUB_LIVES, 941, 90205 },
+        { DeathTrap.END, 1, STUB_LIVES, 91, 5205 },
+    };
+
+    //--------------------------------------------------------------------------
+    //  checkGolden()
+    //
+    //  Replays the golden logs and prints any that end in another state.
+    //  Returns true if all of them ended as expected.
+    //
+    //--------------------------------------------------------------------------
+    static boolean checkGolden()
+    {
+        boolean passed = true;
+
+        for(int i = 0; i < GOLDEN_LOGS.length; i++)
+        {
+            InputLog log = new InputLog();
+            for(int j = 0; j < GOLDEN_LOGS[i].length; j += 2)
+            {
+                log.add(GOLDEN_LOGS[i][j], (int)GOLDEN_LOGS[i][j + 1]);
+            }
+
+            HeadlessGame game = new HeadlessGame();
+            game.replay(log);
+
+            long end[] = { game.getState(), game.getMap().getLevel(),
+                           game.getLives(), game.getTicks(), game.getClock() };
+            if(!Arrays.equals(end, GOLDEN_ENDS[i]))
+            {
+                System.out.println("golden " + GOLDEN_NAMES[i] + ": ended " +
+                                   Arrays.toString(end) + ", expected " +
+                                   Arrays.toString(GOLDEN_ENDS[i]));
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    //--------------------------------------------------------------------------
+    //  main()
+    //
+    //  Checks the golden logs, then replays the logs given on the command
+    //  line.  Exits with 1 if a golden log ended in the wrong state or any log
+    //  replayed to different results.
+    //
+    //--------------------------------------------------------------------------
+    public static void main(String args[]) throws Exception
+    {
+        int repeat = 1;
+        List<File> files = new ArrayList<File>();
+
+        for(int i = 0; i < args.length; i++)
+        {
+            if(args[i].equals("-repeat"))
+            {
+                repeat = Integer.parseInt(args[++i]);
+            }
+            else
+            {
+                files.add(new File(args[i]));
+            }
+        }
+
+        if(!checkGolden())
+        {
+            System.exit(1);
+        }
+        System.out.println(GOLDEN_LOGS.length + " golden logs passed");
+
+        ExecutorService pool =
+            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        long start = System.nanoTime();
+        boolean same = true;
+
+        try
+        {
+            for(File file : files)
+            {
+                final InputLog log = InputLog.read(file);
+                List<Future<HeadlessGame>> runs = new ArrayList<Future<HeadlessGame>>();
+
+                for(int i = 0; i < repeat; i++)
+                {
+                    runs.add(pool.submit(new Callable<HeadlessGame>()
+                    {
+                        public HeadlessGame call()
+                        {
+                            HeadlessGame game = new HeadlessGame();
+                            game.replay(log);
+                            return game;
+                        }
+                    }));
+                }
+
+                HeadlessGame first = runs.get(0).get();
+                for(int i = 1; i < runs.size(); i++)
+                {
+                    if(runs.get(i).get().getChecksum() != first.getChecksum())
+                    {
+                        System.out.println(file + ": run " + i + " differs");
+                        same = false;
+                    }
+                }
+
+                System.out.println(file + ": ticks " + first.getTicks() +
+                                   ", level " + first.getMap().getLevel() +
+                                   ", lives " + first.getLives() +
+                                   ", checksum " + Long.toHexString(first.getChecksum()));
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println((files.size() * repeat) + " sessions in " + seconds +
+                           " s (" + (int)(files.size() * repeat * 60 / seconds) +
+                           " per minute)");
+        if(!same)
+        {
+            System.exit(1);
+        }
+    }
+}
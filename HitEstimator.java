@@ -0,0 +1,141 @@
+package cannon;
+
+/*########################################################################
+ *
+ * HitEstimator
+ *
+ *   Chance that a shot hits the target in gusting wind, found by flying
+ * it many times with different gusts.  The flights are split evenly
+ * over one task per processor.  Each task gets its own SplittableRandom
+ * split off the estimate's, and its own Trajectory and WindModel, so
+ * the tasks share nothing and the result for a seed does not depend on
+ * the timing of the threads.
+ *
+ *   Flights are flown the way cannon flies the shot: in FixedTrajectory
+ * or Trajectory, over a copy of the ground as it is when the estimate is
+ * asked for.  FixedTrajectory has no gusts, and without gusts every
+ * flight is the same, so then the shot is flown just once.
+ *
+ *   request() is for the UI: it starts an estimate in the background and
+ * returns at once.  When the estimate is done the Listener gets it,
+ * unless a newer request has come in since, in which case it is thrown
+ * away.
+ *
+ ######################################################################*/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class HitEstimator
+{
+  //##### Seed of the estimates request() makes.  Every aim is flown
+  //##### through the same gusts, so the estimate only changes when the
+  //##### aim does.
+  static final long SEED = 1995;
+
+  public interface Listener
+    {
+      void estimated(double probability);
+    }
+
+  int tasks = Runtime.getRuntime().availableProcessors();
+  ExecutorService pool = Executors.newFixedThreadPool(tasks, daemons("HitEstimator"));
+  ExecutorService coordinator = Executors.newSingleThreadExecutor(daemons("HitEstimator request"));
+  AtomicLong latest = new AtomicLong();
+
+  //##### Share of flights, out of samples, that hit.  The aim is in
+  //##### scrollbar values, spread in windage units; fixed picks the
+  //##### engine and ground is flown over as it is, or null for flat.
+  public double estimate(final int angle, final int velocity, final int gravity,
+			 final int wind, final double spread, int samples,
+			 final int xmax, final int ymax, final boolean fixed,
+			 final Terrain ground, long seed)
+    throws InterruptedException
+    {
+      if (fixed || spread == 0)
+	{
+	  Trajectory shell = fixed ? new FixedTrajectory() : new Trajectory();
+	  shell.setTerrain(ground);
+	  shell.launchValues(angle, velocity, gravity, wind, xmax, ymax);
+	  return shell.fly() ? 1 : 0;
+	}
+
+      SplittableRandom root = new SplittableRandom(seed);
+      List<Future<Integer>> parts = new ArrayList<Future<Integer>>();
+
+      for (int t = 0; t < tasks; t++)
+	{
+	  final SplittableRandom random = root.split();
+	  final int flights = samples / tasks + ((t < samples % tasks) ? 1 : 0);
+	  parts.add(pool.submit(new Callable<Integer>() {
+	      public Integer call() {
+		Trajectory shell = new Trajectory();
+		shell.setTerrain(ground);
+		int hits = 0;
+		for (int i = 0; i < flights; i++)
+		  {
+		    shell.setWind(new WindModel(Trajectory.windage(wind), spread, random));
+		    shell.launchValues(angle, velocity, gravity, wind, xmax, ymax);
+		    if (shell.fly()) hits++;
+		  }
+		return hits;
+	      }
+	    }));
+	}
+
+      int hits = 0;
+      try
+	{
+	  for (Future<Integer> part : parts)
+	    hits += part.get();
+	}
+      catch (ExecutionException e)
+	{
+	  throw new RuntimeException(e.getCause());
+	}
+      return (double)hits / samples;
+    }
+
+  //##### estimate() in the background, reporting to listener.  ground
+  //##### is copied here, so it may be carved while the estimate runs.
+  public void request(final int angle, final int velocity, final int gravity,
+		      final int wind, final double spread, final int samples,
+		      final int xmax, final int ymax, final boolean fixed,
+		      Terrain ground, final Listener listener)
+    {
+      final Terrain field = (ground != null) ? ground.copy() : null;
+      final long id = latest.incrementAndGet();
+      coordinator.execute(new Runnable() {
+	  public void run() {
+	    if (latest.get() != id) return;
+	    try
+	      {
+		double p = estimate(angle, velocity, gravity, wind, spread,
+				    samples, xmax, ymax, fixed, field, SEED);
+		if (latest.get() == id) listener.estimated(p);
+	      }
+	    catch (InterruptedException e) {}
+	  }
+	});
+    }
+
+  public void close()
+    {
+      coordinator.shutdownNow();
+      pool.shutdownNow();
+    }
+
+  static ThreadFactory daemons(final String name)
+    {
+      return new ThreadFactory() {
+	  public Thread newThread(Runnable r) {
+	    Thread thread = new Thread(r, name);
+	    thread.setDaemon(true);
+	    return thread;
+	  }
+	};
+    }
+}
@@ -0,0 +1,137 @@
+//==============================================================================
+//  Filename:       InputLog.java
+//  Purpose:        Timestamped record of the keys pressed during a game, from
+//                  the moment the game entered the beginning state.  Logs are
+//                  kept in two growing primitive arrays and can be written to
+//                  and read back from a small binary file so sessions can be
+//                  replayed by HeadlessGame.
+//
+//  Format:         int MAGIC, int count, then count pairs of
+//                  (long milliseconds, int key code).
+//==============================================================================
+
+import java.io.*;
+
+public class InputLog
+{
+    static final int        MAGIC = 0x44544B31;     //"DTK1"
+
+    private long            times[];        //milliseconds since the start.
+    private int             keys[];         //key code pressed at that time.
+    private int             count;          //number of events recorded.
+
+    public InputLog()
+    {
+        times = new long[256];
+        keys = new int[256];
+        count = 0;
+    }
+
+    //--------------------------------------------------------------------------
+    //  add()
+    //
+    //  Appends a key press.  Times are expected in non decreasing order; an
+    //  earlier time is moved up to the last one so replays stay ordered.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized void add(long time, int keyCode)
+    {
+        if(count == times.length)
+        {
+            long newTimes[] = new long[count * 2];
+            int newKeys[] = new int[count * 2];
+            System.arraycopy(times, 0, newTimes, 0, count);
+            System.arraycopy(keys, 0, newKeys, 0, count);
+            times = newTimes;
+            keys = newKeys;
+        }
+
+        if(count > 0 && time < times[count - 1])
+        {
+            time = times[count - 1];
+        }
+        times[count] = time;
+        keys[count] = keyCode;
+        count++;
+    }
+
+    public synchronized void clear()
+    {
+        count = 0;
+    }
+
+    public synchronized int size()
+    {
+        return count;
+    }
+
+    public synchronized long getTime(int index)
+    {
+        return times[index];
+    }
+
+    public synchronized int getKey(int index)
+    {
+        return keys[index];
+    }
+
+    //--------------------------------------------------------------------------
+    //  write()
+    //
+    //  Writes the log to the given file.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized void write(File file) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)));
+
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(count);
+            for(int i = 0; i < count; i++)
+            {
+                out.writeLong(times[i]);
+                out.writeInt(keys[i]);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  read()
+    //
+    //  Reads a log written by write().
+    //
+    //--------------------------------------------------------------------------
+    public static InputLog read(File file) throws IOException
+    {
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)));
+
+        try
+        {
+            if(in.readInt() != MAGIC)
+            {
+                throw new IOException(file + " is not a DeathTrap input log");
+            }
+
+            InputLog log = new InputLog();
+            int events = in.readInt();
+            for(int i = 0; i < events; i++)
+            {
+                long time = in.readLong();
+                log.add(time, in.readInt());
+            }
+            return log;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
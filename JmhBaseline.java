@@ -0,0 +1,156 @@
+package perf;
+
+/*########################################################################
+ *
+ * JmhBaseline
+ *
+ *   BenchmarkRunner's baseline check for JMH results.  Reads the CSV
+ * that JMH writes with -prof gc -rf csv, turns it into BenchmarkRunner
+ * lines, one per benchmark, named package.method:
+ *
+ *     name <tab> ns/op <tab> bytes/op
+ *
+ * and compares them with a baseline file the same way BenchmarkRunner
+ * does, scaled by the calibration benchmark.  Exits 1 on a regression.
+ * A benchmark with parameters gets their values added to its name in
+ * the order of the columns, as in deathtrap.frame.minimap.64.
+ *
+ *   Times on a shared CI machine move by more than any tolerance that
+ * would still catch a real slow down, while bytes per operation do
+ * not.  With -report-time a slower time is printed but does not fail
+ * the run; only allocation does.
+ *
+ *   Usage:  java perf.JmhBaseline [-baseline file] [-out file]
+ *                                 [-tolerance pct] [-report-time]
+ *                                 results.csv
+ *
+ ######################################################################*/
+
+import java.io.*;
+import java.util.*;
+
+public class JmhBaseline
+{
+  static final String ALLOCATION = ":gc.alloc.rate.norm";
+
+  public static void main(String args[]) throws IOException
+    {
+      File baseline = null, out = null, csv = null;
+      double tolerance = 20;
+      boolean reportTime = false;
+
+      for (int i = 0; i < args.length; i++)
+	{
+	  if (args[i].equals("-baseline")) baseline = new File(args[++i]);
+	  else if (args[i].equals("-out")) out = new File(args[++i]);
+	  else if (args[i].equals("-tolerance")) tolerance = Double.parseDouble(args[++i]);
+	  else if (args[i].equals("-report-time")) reportTime = true;
+	  else if (args[i].startsWith("-"))
+	    throw new IllegalArgumentException("unknown option " + args[i]);
+	  else csv = new File(args[i]);
+	}
+      if (csv == null) throw new IllegalArgumentException("no results file");
+
+      Map<String, double[]> results = read(csv);
+      Map<String, double[]> base = (baseline != null) ? BenchmarkRunner.read(baseline)
+	: new HashMap<String, double[]>();
+      double scale = BenchmarkRunner.scale(results.get(BenchmarkRunner.CALIBRATION), base);
+      StringBuilder lines = new StringBuilder();
+      boolean ok = true;
+
+      for (Map.Entry<String, double[]> entry : results.entrySet())
+	{
+	  double result[] = entry.getValue();
+	  String line = entry.getKey() + "\t" + BenchmarkRunner.format(result[0])
+	    + "\t" + BenchmarkRunner.format(result[1]);
+	  lines.append(line).append('\n');
+
+	  double expected[] = base.get(entry.getKey());
+	  String slower = BenchmarkRunner.slower(result, expected, scale, tolerance);
+	  String allocates = BenchmarkRunner.allocates(result, expected, tolerance);
+	  if (slower != null)
+	    {
+	      line += reportTime ? slower.replace("REGRESSION", "slower, not gated:") : slower;
+	      ok &= reportTime;
+	    }
+	  if (allocates != null)
+	    {
+	      line += allocates;
+	      ok = false;
+	    }
+	  System.out.println(line);
+	}
+
+      if (out != null)
+	{
+	  Writer writer = new FileWriter(out);
+	  try { writer.write(lines.toString()); }
+	  finally { writer.close(); }
+	}
+      if (!ok) System.exit(1);
+    }
+
+  //##### { ns/op, bytes/op } by name, in the order of the file
+  static Map<String, double[]> read(File file) throws IOException
+    {
+      Map<String, double[]> result = new LinkedHashMap<String, double[]>();
+      BufferedReader reader = new BufferedReader(new FileReader(file));
+
+      try
+	{
+	  String line = reader.readLine();
+	  if (line == null) return result;
+	  int columns = split(line).length;		// header
+	  while ((line = reader.readLine()) != null)
+	    {
+	      //##### Benchmark, Mode, Threads, Samples, Score, Error, Unit,
+	      //##### then one column per parameter
+	      String fields[] = split(line);
+	      if (fields.length < 7) continue;
+
+	      String name = fields[0];
+	      double score = Double.parseDouble(fields[4]);
+	      String params = "";
+	      //##### Benchmarks without a parameter leave its column empty
+	      for (int i = 7; i < Math.min(fields.length, columns); i++)
+		if (fields[i].length() > 0)
+		  params += "." + fields[i];
+
+	      if (name.endsWith(ALLOCATION))
+		{
+		  name = shortName(name.substring(0, name.length() - ALLOCATION.length()));
+		  double entry[] = result.get(name + params);
+		  if (entry != null) entry[1] = score;
+		}
+	      else if (name.indexOf(':') < 0)
+		result.put(shortName(name) + params, new double[] { score, 0 });
+	    }
+	}
+      finally
+	{
+	  reader.close();
+	}
+      return result;
+    }
+
+  //##### cannon.CannonBenchmarks.step to cannon.step; the calibration
+  //##### benchmark to BenchmarkRunner.CALIBRATION
+  static String shortName(String name)
+    {
+      int method = name.lastIndexOf('.');
+      int type = name.lastIndexOf('.', method - 1);
+      String shortName = name.substring(0, Math.max(type, 0)) + name.substring(method);
+      if (name.substring(method + 1).equals(BenchmarkRunner.CALIBRATION))
+	return BenchmarkRunner.CALIBRATION;
+      return shortName;
+    }
+
+  //##### One CSV line; JMH quotes the fields and never has a quote in one
+  static String[] split(String line)
+    {
+      String fields[] = line.split(",", -1);
+      for (int i = 0; i < fields.length; i++)
+	fields[i] = fields[i].replace("\"", "");
+      return fields;
+    }
+}
@@ -0,0 +1,345 @@
+//==============================================================================
+//  Filename:       LightMap.java
+//  Purpose:        Light level of every cell of a maze, 0 (black) to 255
+//                  (full).  The static part is baked once when a level loads:
+//                  an ambient level, more where the corridors open up, and a
+//                  glow around the maze end.  Short lived lights, such as a
+//                  muzzle flash, are added on top as deltas over a window of
+//                  at most MAX_RADIUS cells, only into cells the light can
+//                  see, and fade out over their lifetime, one tick() per game
+//                  tick.  The renderer reads a cell with getLevel() and
+//                  shades a colour with shade(), a table lookup.
+//
+//  Notes:          Cells are addressed as cells[y][x], like VisibilitySet.
+//                  Lights may be added and ticked on other threads than the
+//                  one drawing, so addLight() and tick() are synchronized
+//                  with each other and publish the combined levels as a new
+//                  array, which is never changed after.  Readers take that
+//                  array from a volatile field without locking: getLevels()
+//                  gives one frame a consistent view of every cell.  While no
+//                  light is live the published array is the baked one, and a
+//                  change only recomputes the cells the lights reach.
+//==============================================================================
+
+import java.awt.Point;
+
+public class LightMap
+{
+    //--------------------------------------------------------------------------
+    //  Baked levels.
+    //--------------------------------------------------------------------------
+    static final int        AMBIENT = 96;
+    static final int        OPENNESS = 12;      //per open neighbour.
+    static final int        EXIT_GLOW = 96;     //at the maze end.
+    static final int        EXIT_RADIUS = 4;
+
+    //--------------------------------------------------------------------------
+    //  Dynamic lights.
+    //--------------------------------------------------------------------------
+    static final int        MAX_LIGHTS = 8;
+    static final int        MAX_RADIUS = VisibilitySet.RADIUS;
+
+    //--------------------------------------------------------------------------
+    //  Factor each level scales a colour channel by, in 256ths.
+    //--------------------------------------------------------------------------
+    static final int        SCALE[] = new int[256];
+    static
+    {
+        for(int level = 0; level < 256; level++)
+        {
+            SCALE[level] = level + 1;
+        }
+    }
+
+    private int             width, height;      //size of the maze in cells.
+    private byte            baked[];            //static level per cell.
+    private short           dynamic[];          //sum of live lights per cell.
+    private volatile byte   levels[];           //published levels per cell.
+    private int             fromX, fromY;       //cells changed since the
+    private int             toX, toY;           //last publish(), inclusive.
+    private VisibilitySet   visible;
+
+    //--------------------------------------------------------------------------
+    //  Live lights, as parallel arrays.  added[] is what each one currently
+    //  contributes at its centre, so it can be taken back out.
+    //--------------------------------------------------------------------------
+    private int             lightX[] = new int[MAX_LIGHTS];
+    private int             lightY[] = new int[MAX_LIGHTS];
+    private int             radius[] = new int[MAX_LIGHTS];
+    private int             intensity[] = new int[MAX_LIGHTS];
+    private int             ticksLeft[] = new int[MAX_LIGHTS];
+    private int             lifetime[] = new int[MAX_LIGHTS];
+    private int             added[] = new int[MAX_LIGHTS];
+    private int             lights;
+
+    //--------------------------------------------------------------------------
+    //  LightMap()
+    //
+    //  Bakes the static light of a maze.  visible limits the dynamic lights
+    //  to what they can see; end is the maze end, or null.
+    //
+    //--------------------------------------------------------------------------
+    public LightMap(int cells[][], VisibilitySet visible, Point end)
+    {
+        this.visible = visible;
+        height = cells.length;
+        width = (height > 0) ? cells[0].length : 0;
+        baked = new byte[width * height];
+        dynamic = new short[width * height];
+
+        for(int y = 0; y < height; y++)
+        {
+            for(int x = 0; x < width; x++)
+            {
+                int level = AMBIENT;
+                for(int dy = -1; dy <= 1; dy++)
+                {
+                    for(int dx = -1; dx <= 1; dx++)
+                    {
+                        if((dx != 0 || dy != 0) && isOpen(cells, x + dx, y + dy))
+                        {
+                            level += OPENNESS;
+                        }
+                    }
+                }
+                if(end != null)
+                {
+                    int distance = Math.max(Math.abs(x - end.x), Math.abs(y - end.y));
+                    if(distance <= EXIT_RADIUS)
+                    {
+                        level += EXIT_GLOW * (EXIT_RADIUS + 1 - distance) / (EXIT_RADIUS + 1);
+                    }
+                }
+                baked[y * width + x] = (byte)Math.min(255, level);
+            }
+        }
+        levels = baked;
+        clean();
+    }
+
+    private static boolean isOpen(int cells[][], int x, int y)
+    {
+        return y >= 0 && y < cells.length && x >= 0 && x < cells[y].length &&
+               cells[y][x] == VisibilitySet.OPEN;
+    }
+
+    //--------------------------------------------------------------------------
+    //  getLevel()
+    //
+    //  Returns the light of a cell, static and dynamic, 0 to 255.  Cells
+    //  outside the maze are black.
+    //
+    //--------------------------------------------------------------------------
+    public int getLevel(int x, int y)
+    {
+        if(x < 0 || y < 0 || x >= width || y >= height)
+        {
+            return 0;
+        }
+        return levels[y * width + x] & 0xff;
+    }
+
+    //--------------------------------------------------------------------------
+    //  getLevels()
+    //
+    //  Returns the levels as they are now, one unsigned byte per cell at
+    //  y * getWidth() + x.  The array does not change, so a renderer can
+    //  read a whole frame from it; it must not write to it.
+    //
+    //--------------------------------------------------------------------------
+    public byte[] getLevels()
+    {
+        return levels;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    //--------------------------------------------------------------------------
+    //  shade()
+    //
+    //  Returns an RGB colour darkened to a light level.
+    //
+    //--------------------------------------------------------------------------
+    public static int shade(int rgb, int level)
+    {
+        int scale = SCALE[level];
+        return (rgb & 0xff000000) |
+               ((((rgb >> 16) & 0xff) * scale >> 8) << 16) |
+               ((((rgb >> 8) & 0xff) * scale >> 8) << 8) |
+               (((rgb & 0xff) * scale) >> 8);
+    }
+
+    //--------------------------------------------------------------------------
+    //  addLight()
+    //
+    //  Adds a light at a cell that fades from intensity to nothing over the
+    //  given number of ticks.  The radius is capped at MAX_RADIUS.  When all
+    //  MAX_LIGHTS are in use the one closest to going out is replaced.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized void addLight(int x, int y, int intensity, int radius, int ticks)
+    {
+        int i;
+        if(lights < MAX_LIGHTS)
+        {
+            i = lights++;
+        }
+        else
+        {
+            i = 0;
+            for(int j = 1; j < lights; j++)
+            {
+                if(ticksLeft[j] < ticksLeft[i])
+                {
+                    i = j;
+                }
+            }
+            apply(i, -added[i]);
+        }
+
+        lightX[i] = x;
+        lightY[i] = y;
+        this.radius[i] = Math.min(radius, MAX_RADIUS);
+        this.intensity[i] = intensity;
+        ticksLeft[i] = ticks;
+        lifetime[i] = ticks;
+        added[i] = 0;
+        apply(i, intensity);
+        publish();
+    }
+
+    //--------------------------------------------------------------------------
+    //  tick()
+    //
+    //  Fades the live lights by one tick and drops those that went out.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized void tick()
+    {
+        if(lights == 0)
+        {
+            return;
+        }
+
+        int i = 0;
+        while(i < lights)
+        {
+            int left = --ticksLeft[i];
+            int now = (left > 0) ? intensity[i] * left / lifetime[i] : 0;
+            apply(i, now - added[i]);
+
+            if(left <= 0)
+            {
+                int last = --lights;
+                lightX[i] = lightX[last];
+                lightY[i] = lightY[last];
+                radius[i] = radius[last];
+                intensity[i] = intensity[last];
+                ticksLeft[i] = ticksLeft[last];
+                lifetime[i] = lifetime[last];
+                added[i] = added[last];
+                continue;
+            }
+            i++;
+        }
+        publish();
+    }
+
+    public synchronized int getLightCount()
+    {
+        return lights;
+    }
+
+    //--------------------------------------------------------------------------
+    //  apply()
+    //
+    //  Changes what light i adds at its centre by delta.  Cells further out
+    //  get a share that falls off linearly to nothing past the radius.
+    //
+    //--------------------------------------------------------------------------
+    private void apply(int i, int delta)
+    {
+        if(delta == 0)
+        {
+            return;
+        }
+
+        int from = added[i];
+        int to = from + delta;
+        int r = radius[i];
+        int cx = lightX[i], cy = lightY[i];
+
+        for(int y = Math.max(0, cy - r); y <= Math.min(height - 1, cy + r); y++)
+        {
+            for(int x = Math.max(0, cx - r); x <= Math.min(width - 1, cx + r); x++)
+            {
+                if((x != cx || y != cy) && !visible.isVisible(cx, cy, x, y))
+                {
+                    continue;
+                }
+                int distance = Math.max(Math.abs(x - cx), Math.abs(y - cy));
+                int share = r + 1 - distance;
+
+                //--------------------------------------------------------------
+                //  Difference of the two rounded values, so adding and taking
+                //  back a light always leaves the cell where it was.
+                //--------------------------------------------------------------
+                dynamic[y * width + x] += to * share / (r + 1) - from * share / (r + 1);
+            }
+        }
+        added[i] = to;
+
+        fromX = Math.min(fromX, Math.max(0, cx - r));
+        fromY = Math.min(fromY, Math.max(0, cy - r));
+        toX = Math.max(toX, Math.min(width - 1, cx + r));
+        toY = Math.max(toY, Math.min(height - 1, cy + r));
+    }
+
+    //--------------------------------------------------------------------------
+    //  publish()
+    //
+    //  Makes the changes since the last call visible to readers: a copy of
+    //  the published levels with the changed cells worked out again, or the
+    //  baked levels once every light has gone out.
+    //
+    //--------------------------------------------------------------------------
+    private void publish()
+    {
+        if(fromX > toX)
+        {
+            return;
+        }
+        if(lights == 0)
+        {
+            levels = baked;
+            clean();
+            return;
+        }
+
+        byte next[] = levels.clone();
+        for(int y = fromY; y <= toY; y++)
+        {
+            for(int x = fromX; x <= toX; x++)
+            {
+                int cell = y * width + x;
+                next[cell] = (byte)Math.min(255, (baked[cell] & 0xff) + dynamic[cell]);
+            }
+        }
+        levels = next;
+        clean();
+    }
+
+    private void clean()
+    {
+        fromX = fromY = Integer.MAX_VALUE;
+        toX = toY = Integer.MIN_VALUE;
+    }
+}
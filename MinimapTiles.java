@@ -0,0 +1,236 @@
+//==============================================================================
+//  Filename:       MinimapTiles.java
+//  Purpose:        Minimap of a maze kept as square tiles of TILE cells.  A
+//                  cell shows once it has been seen from where the player has
+//                  been, using the level's VisibilitySet.  The tiles are
+//                  images that are drawn when something in them is first
+//                  revealed and redrawn only when more of them is revealed,
+//                  so a frame costs a check of the cells in view of the
+//                  player and a blit of the few tiles around the player,
+//                  however big the maze is.  Tiles nothing has been revealed
+//                  in are never created.
+//
+//  Notes:          Cells are addressed as cells[y][x], like VisibilitySet.
+//==============================================================================
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public class MinimapTiles
+{
+    //--------------------------------------------------------------------------
+    //  Cells along each side of a tile.
+    //--------------------------------------------------------------------------
+    static final int        TILE = 16;
+
+    static final int        FLOOR = 0xff404040;
+    static final int        WALL = 0xffc0c0c0;
+    static final Color      BORDER = Color.white;
+    static final Color      PLAYER = Color.red;
+
+    private int             cells[][];
+    private int             width, height;      //size of the maze in cells.
+    private int             cellSize;           //pixels per cell.
+    private int             tilesX, tilesY;
+    private BufferedImage   tiles[];
+    private long            revealed[];         //one bit per cell.
+    private boolean         dirty[];            //tiles to redraw.
+    private int             dirtyTiles[];
+    private int             dirtyCount;
+    private int             texels[];           //one tile, for setRGB().
+    private int             lastX = -1, lastY = -1;
+
+    //--------------------------------------------------------------------------
+    //  MinimapTiles()
+    //
+    //  Takes the maze and the size in pixels of one cell on the minimap.
+    //  Nothing is revealed yet.
+    //
+    //--------------------------------------------------------------------------
+    public MinimapTiles(int cells[][], int cellSize)
+    {
+        this.cells = cells;
+        this.cellSize = cellSize;
+        height = cells.length;
+        width = (height > 0) ? cells[0].length : 0;
+        tilesX = (width + TILE - 1) / TILE;
+        tilesY = (height + TILE - 1) / TILE;
+        tiles = new BufferedImage[tilesX * tilesY];
+        dirty = new boolean[tiles.length];
+        dirtyTiles = new int[tiles.length];
+        revealed = new long[(width * height + 63) / 64];
+        texels = new int[TILE * cellSize * TILE * cellSize];
+    }
+
+    //--------------------------------------------------------------------------
+    //  update()
+    //
+    //  Reveals what can be seen from the player's cell and redraws the tiles
+    //  that changed.  Does nothing while the player stays in the same cell.
+    //
+    //--------------------------------------------------------------------------
+    public void update(int playerX, int playerY, VisibilitySet visible)
+    {
+        if(playerX == lastX && playerY == lastY)
+        {
+            return;
+        }
+        lastX = playerX;
+        lastY = playerY;
+
+        reveal(playerX, playerY);
+        for(int y = playerY - VisibilitySet.RADIUS; y <= playerY + VisibilitySet.RADIUS; y++)
+        {
+            for(int x = playerX - VisibilitySet.RADIUS; x <= playerX + VisibilitySet.RADIUS; x++)
+            {
+                if(visible.isVisible(playerX, playerY, x, y))
+                {
+                    reveal(x, y);
+                }
+            }
+        }
+
+        while(dirtyCount > 0)
+        {
+            int tile = dirtyTiles[--dirtyCount];
+            dirty[tile] = false;
+            drawTile(tile);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  reveal()
+    //
+    //  Marks a cell as seen, and its tile as needing a redraw if it was not.
+    //
+    //--------------------------------------------------------------------------
+    private void reveal(int x, int y)
+    {
+        if(x < 0 || y < 0 || x >= width || y >= height)
+        {
+            return;
+        }
+
+        int cell = y * width + x;
+        long bit = 1L << (cell & 63);
+        if((revealed[cell >>> 6] & bit) != 0)
+        {
+            return;
+        }
+        revealed[cell >>> 6] |= bit;
+
+        int tile = (y / TILE) * tilesX + (x / TILE);
+        if(!dirty[tile])
+        {
+            dirty[tile] = true;
+            dirtyTiles[dirtyCount++] = tile;
+        }
+    }
+
+    public boolean isRevealed(int x, int y)
+    {
+        if(x < 0 || y < 0 || x >= width || y >= height)
+        {
+            return false;
+        }
+        int cell = y * width + x;
+        return (revealed[cell >>> 6] & (1L << (cell & 63))) != 0;
+    }
+
+    //--------------------------------------------------------------------------
+    //  drawTile()
+    //
+    //  Draws the revealed cells of one tile into its image, creating it the
+    //  first time.  Unrevealed cells are left transparent.
+    //
+    //--------------------------------------------------------------------------
+    private void drawTile(int tile)
+    {
+        int side = TILE * cellSize;
+        int left = (tile % tilesX) * TILE;
+        int top = (tile / tilesX) * TILE;
+
+        if(tiles[tile] == null)
+        {
+            tiles[tile] = new BufferedImage(side, side, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        for(int cy = 0; cy < TILE; cy++)
+        {
+            for(int cx = 0; cx < TILE; cx++)
+            {
+                int x = left + cx, y = top + cy;
+                int color = 0;
+                if(isRevealed(x, y))
+                {
+                    color = (cells[y][x] == VisibilitySet.OPEN) ? FLOOR : WALL;
+                }
+
+                int start = cy * cellSize * side + cx * cellSize;
+                for(int py = 0; py < cellSize; py++)
+                {
+                    int row = start + py * side;
+                    for(int px = 0; px < cellSize; px++)
+                    {
+                        texels[row + px] = color;
+                    }
+                }
+            }
+        }
+
+        //----------------------------------------------------------------------
+        //  setRGB() leaves the image managed, so it can still be cached in
+        //  video memory; writing to its raster directly would not.
+        //----------------------------------------------------------------------
+        tiles[tile].setRGB(0, 0, side, side, texels, 0, side);
+    }
+
+    //--------------------------------------------------------------------------
+    //  draw()
+    //
+    //  Draws the square of the minimap centered on the player at (left, top),
+    //  size pixels on a side.  Only the tiles overlapping the square are
+    //  drawn, clipped to it.
+    //
+    //--------------------------------------------------------------------------
+    public void draw(Graphics2D g, int left, int top, int size,
+                     int playerX, int playerY)
+    {
+        Shape clip = g.getClip();
+        g.clipRect(left, top, size, size);
+        g.setColor(Color.black);
+        g.fillRect(left, top, size, size);
+
+        //----------------------------------------------------------------------
+        //  Pixel of the whole minimap that lands on the left top corner.
+        //----------------------------------------------------------------------
+        int side = TILE * cellSize;
+        int originX = playerX * cellSize + cellSize / 2 - size / 2;
+        int originY = playerY * cellSize + cellSize / 2 - size / 2;
+
+        int firstX = Math.max(0, Math.floorDiv(originX, side));
+        int firstY = Math.max(0, Math.floorDiv(originY, side));
+        int lastTileX = Math.min(tilesX - 1, Math.floorDiv(originX + size - 1, side));
+        int lastTileY = Math.min(tilesY - 1, Math.floorDiv(originY + size - 1, side));
+
+        for(int ty = firstY; ty <= lastTileY; ty++)
+        {
+            for(int tx = firstX; tx <= lastTileX; tx++)
+            {
+                BufferedImage tile = tiles[ty * tilesX + tx];
+                if(tile != null)
+                {
+                    g.drawImage(tile, left + tx * side - originX,
+                                top + ty * side - originY, null);
+                }
+            }
+        }
+
+        g.setColor(PLAYER);
+        g.fillRect(left + playerX * cellSize - originX, top + playerY * cellSize - originY,
+                   cellSize, cellSize);
+        g.setClip(clip);
+        g.setColor(BORDER);
+        g.drawRect(left, top, size - 1, size - 1);
+    }
+}
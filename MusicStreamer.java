@@ -0,0 +1,226 @@
+//==============================================================================
+//  Filename:       MusicStreamer.java
+//  Purpose:        Plays StreamingClips.  One daemon thread decodes every
+//                  playing track a chunk at a time into a single reused
+//                  buffer and hands it to the track's line, writing only as
+//                  much as each line has room for so no track holds up
+//                  another.  Memory for music is that buffer plus the line
+//                  buffer of each track that is playing, however long the
+//                  tracks are.
+//
+//  Notes:          The thread is started by the first request and sleeps while
+//                  nothing is playing.  close() ends it and closes the line of
+//                  every clip; nothing plays after that.
+//==============================================================================
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+
+public class MusicStreamer implements Runnable
+{
+    //--------------------------------------------------------------------------
+    //  Bytes decoded at a time, and how long to wait when every line is full.
+    //--------------------------------------------------------------------------
+    static final int        CHUNK = 16 * 1024;
+    static final int        PUMP_MILLIS = 20;
+
+    //--------------------------------------------------------------------------
+    //  Longest close() waits for the thread to let go of the lines.
+    //--------------------------------------------------------------------------
+    static final long       CLOSE_MILLIS = 1000;
+
+    private byte            buffer[] = new byte[CHUNK];
+    private ArrayList<StreamingClip> playing = new ArrayList<StreamingClip>();
+    private ArrayList<StreamingClip> pending = new ArrayList<StreamingClip>();
+    private ArrayList<StreamingClip> clips = new ArrayList<StreamingClip>();
+    private Thread          thread;
+    private boolean         closed;
+
+    //--------------------------------------------------------------------------
+    //  getClip()
+    //
+    //  Returns a clip for the track at base/name, in the manner of
+    //  Applet.getAudioClip().  Nothing is read until it is played.
+    //
+    //--------------------------------------------------------------------------
+    public StreamingClip getClip(URL base, String name)
+    {
+        try
+        {
+            StreamingClip clip = new StreamingClip(new URL(base, name), this);
+            synchronized(this)
+            {
+                clips.add(clip);
+            }
+            return clip;
+        }
+        catch(java.net.MalformedURLException e)
+        {
+            return null;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  request()
+    //
+    //  Asks the thread to play, loop or stop a clip.  A later request for the
+    //  same clip replaces one not yet carried out.
+    //
+    //--------------------------------------------------------------------------
+    synchronized void request(StreamingClip clip, int what)
+    {
+        if(closed)
+        {
+            return;
+        }
+        if(clip.request == StreamingClip.NONE)
+        {
+            pending.add(clip);
+        }
+        clip.request = what;
+
+        if(thread == null)
+        {
+            thread = new Thread(this, "MusicStreamer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        notify();
+    }
+
+    //--------------------------------------------------------------------------
+    //  close()
+    //
+    //  Stops the thread, which closes the stream and line of every clip as it
+    //  ends.  If the thread never started, no clip has a line to close.
+    //
+    //--------------------------------------------------------------------------
+    public void close()
+    {
+        Thread running;
+        synchronized(this)
+        {
+            closed = true;
+            running = thread;
+            notify();
+        }
+
+        if(running != null)
+        {
+            running.interrupt();
+            try
+            {
+                running.join(CLOSE_MILLIS);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  run()
+    //
+    //  Carries out the requests, then tops up every playing line, then waits
+    //  a little if none had room.  Once closed it lets go of every clip.
+    //
+    //--------------------------------------------------------------------------
+    public void run()
+    {
+        ArrayList<StreamingClip> requests = new ArrayList<StreamingClip>();
+        ArrayList<Integer> what = new ArrayList<Integer>();
+
+        try
+        {
+            while(true)
+            {
+                synchronized(this)
+                {
+                    while(!closed && pending.isEmpty() && playing.isEmpty())
+                    {
+                        wait();
+                    }
+                    if(closed)
+                    {
+                        break;
+                    }
+                    for(StreamingClip clip : pending)
+                    {
+                        requests.add(clip);
+                        what.add(clip.request);
+                        clip.request = StreamingClip.NONE;
+                    }
+                    pending.clear();
+                }
+
+                for(int i = 0; i < requests.size(); i++)
+                {
+                    StreamingClip clip = requests.get(i);
+                    playing.remove(clip);
+                    if(what.get(i) == StreamingClip.STOP)
+                    {
+                        clip.finish();
+                    }
+                    else if(clip.start(what.get(i) == StreamingClip.LOOP))
+                    {
+                        playing.add(clip);
+                    }
+                }
+                requests.clear();
+                what.clear();
+
+                boolean wrote = false;
+                for(int i = playing.size() - 1; i >= 0; i--)
+                {
+                    StreamingClip clip = playing.get(i);
+                    int n;
+                    try
+                    {
+                        n = clip.pump(buffer);
+                    }
+                    catch(IOException e)
+                    {
+                        System.err.println("MusicStreamer: " + e);
+                        clip.finish();
+                        n = -1;
+                    }
+                    if(n < 0)
+                    {
+                        playing.remove(i);
+                    }
+                    wrote |= (n > 0);
+                }
+
+                if(!wrote)
+                {
+                    synchronized(this)
+                    {
+                        if(pending.isEmpty())
+                        {
+                            wait(PUMP_MILLIS);
+                        }
+                    }
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+        }
+        finally
+        {
+            ArrayList<StreamingClip> all;
+            synchronized(this)
+            {
+                closed = true;
+                all = new ArrayList<StreamingClip>(clips);
+            }
+            for(StreamingClip clip : all)
+            {
+                clip.finish();
+            }
+            playing.clear();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package cannon;
+
+/*########################################################################
+ *
+ * ParticleSystem
+ *
+ *   Smoke and debris for cannon.  Particles live in a fixed pool kept as
+ * parallel arrays (position, velocity, age and kind), so spawning and
+ * expiring never allocate: a new particle takes the next free slot and
+ * an expired one is replaced by the last live particle.  They move with
+ * the same integration as the shells, under the same gravity and wind,
+ * each kind scaled by its own weight (smoke is slightly buoyant, debris
+ * falls like a shell).
+ *
+ *   cannon draws straight onto the screen, so draw() first erases every
+ * place a particle was drawn the frame before, then draws all the
+ * particles of one kind after the other with a single colour change per
+ * kind.  Erasing hands the spot to a Backdrop, which puts back whatever
+ * was under it (ground, cannon, target); with none the spot is just
+ * cleared.  When the pool is full new particles are dropped.
+ *
+ ######################################################################*/
+
+import java.awt.*;
+
+public class ParticleSystem
+{
+  public static final int SMOKE = 0, DEBRIS = 1;
+  static final int KINDS = 2;
+
+  //##### Per kind: share of gravity, lifetime in steps, colour
+  static final float WEIGHT[] = { -0.15f, 1f };
+  static final int LIFE[] = { 120, 60 };
+  static final Color COLOR[] = { Color.gray, Color.darkGray };
+  static final int SIZE = 2;
+
+  float x[], y[], vx[], vy[];
+  short age[];
+  byte kind[];
+  int count, capacity;
+
+  //##### Where each slot was drawn last frame, for erasing
+  int drawnX[], drawnY[];
+  boolean drawn[];
+
+  //##### Spots of particles that expired since the last draw
+  int staleX[], staleY[];
+  int stale;
+
+  int seed = 1;
+
+  Backdrop backdrop;
+
+  //##### What lies under the particles, redrawn over a spot one left
+  public interface Backdrop
+    {
+      void restore(Graphics g, int x, int y, int width, int height);
+    }
+
+  public ParticleSystem(int capacity)
+    {
+      this.capacity = capacity;
+      x = new float[capacity];
+      y = new float[capacity];
+      vx = new float[capacity];
+      vy = new float[capacity];
+      age = new short[capacity];
+      kind = new byte[capacity];
+      drawnX = new int[capacity];
+      drawnY = new int[capacity];
+      drawn = new boolean[capacity];
+      staleX = new int[capacity];
+      staleY = new int[capacity];
+    }
+
+  public void setBackdrop(Backdrop backdrop)
+    {
+      this.backdrop = backdrop;
+    }
+
+  //##### Velocities are in the shell's units: +y is up
+  public boolean spawn(int k, double px, double py, double pvx, double pvy)
+    {
+      if (count == capacity) return false;
+      int i = count++;
+      x[i] = (float)px;
+      y[i] = (float)py;
+      vx[i] = (float)pvx;
+      vy[i] = (float)pvy;
+      age[i] = 0;
+      kind[i] = (byte)k;
+      drawn[i] = false;
+      return true;
+    }
+
+  //##### n particles flying out from a point in random directions
+  public void burst(int k, double px, double py, int n, double speed)
+    {
+      for (int j = 0; j < n; j++)
+	{
+	  double a = random() * 2 * Math.PI;
+	  double s = speed * (0.3 + 0.7 * random());
+	  if (!spawn(k, px, py, s * Math.cos(a), Math.abs(s * Math.sin(a))))
+	    return;
+	}
+    }
+
+  //##### One step, with the integration Trajectory.step() uses
+  public void update(double gravity, double windage)
+    {
+      float g = (float)(gravity / 2);
+      float w = (float)(windage / 2);
+
+      int i = 0;
+      while (i < count)
+	{
+	  int k = kind[i];
+	  if (++age[i] >= LIFE[k])
+	    {
+	      expire(i);
+	      continue;
+	    }
+	  x[i] += vx[i];
+	  vx[i] -= w;
+	  y[i] -= vy[i];
+	  vy[i] -= g * WEIGHT[k];
+	  i++;
+	}
+    }
+
+  //##### Swap the last live particle into slot i
+  void expire(int i)
+    {
+      if (drawn[i])
+	{
+	  staleX[stale] = drawnX[i];
+	  staleY[stale] = drawnY[i];
+	  stale++;
+	}
+      int last = --count;
+      x[i] = x[last]; y[i] = y[last];
+      vx[i] = vx[last]; vy[i] = vy[last];
+      age[i] = age[last]; kind[i] = kind[last];
+      drawnX[i] = drawnX[last]; drawnY[i] = drawnY[last];
+      drawn[i] = drawn[last];
+    }
+
+  public void draw(Graphics g)
+    {
+      //##### Erase last frame: expired particles first, then live ones
+      for (int j = 0; j < stale; j++)
+	erase(g, staleX[j], staleY[j]);
+      stale = 0;
+      for (int i = 0; i < count; i++)
+	if (drawn[i])
+	  erase(g, drawnX[i], drawnY[i]);
+
+      //##### Then draw, one kind at a time
+      for (int k = 0; k < KINDS; k++)
+	{
+	  g.setColor(COLOR[k]);
+	  for (int i = 0; i < count; i++)
+	    {
+	      if (kind[i] != k) continue;
+	      int px = (int)x[i] - 1, py = (int)y[i] - 1;
+	      g.drawRect(px, py, SIZE, SIZE);
+	      drawnX[i] = px;
+	      drawnY[i] = py;
+	      drawn[i] = true;
+	    }
+	}
+    }
+
+  void erase(Graphics g, int px, int py)
+    {
+      if (backdrop != null) backdrop.restore(g, px, py, SIZE + 1, SIZE + 1);
+      else g.clearRect(px, py, SIZE + 1, SIZE + 1);
+    }
+
+  //##### Everything gone and erased
+  public boolean isEmpty()
+    {
+      return count == 0 && stale == 0;
+    }
+
+  public int size()
+    {
+      return count;
+    }
+
+  public void clear()
+    {
+      count = 0;
+      stale = 0;
+    }
+
+  //##### Cheap deterministic random in [0, 1)
+  double random()
+    {
+      seed = seed * 1103515245 + 12345;
+      return ((seed >>> 8) & 0xffffff) / (double)0x1000000;
+    }
+}
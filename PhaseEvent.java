@@ -0,0 +1,33 @@
+package perf;
+
+/*########################################################################
+ *
+ * PhaseEvent
+ *
+ *   Flight Recorder event for one timed phase of a frame, sent by
+ * FrameProfiler.  Enable perf.Phase in the recording settings to get
+ * them.
+ *
+ ######################################################################*/
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("perf.Phase")
+@Label("Frame Phase")
+@Category("Games")
+public class PhaseEvent extends Event
+{
+  @Label("Profiler")
+  String profiler;
+
+  @Label("Phase")
+  String phase;
+
+  @Label("Duration")
+  @Timespan(Timespan.NANOSECONDS)
+  long nanos;
+}
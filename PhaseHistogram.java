@@ -0,0 +1,102 @@
+package perf;
+
+/*########################################################################
+ *
+ * PhaseHistogram
+ *
+ *   Lock free histogram of durations in nanoseconds.  Buckets are log
+ * linear, in the style of an HDR histogram: each power of two is split
+ * into SUB_BUCKETS equal buckets, so any recorded value is known to
+ * within 1/SUB_BUCKETS of itself, from a nanosecond up to minutes, in
+ * a few hundred counters.  Recording is a couple of shifts and an
+ * atomic increment, and any number of threads may record at once.
+ *
+ ######################################################################*/
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class PhaseHistogram
+{
+  static final int SUB_BITS = 3;
+  static final int SUB_BUCKETS = 1 << SUB_BITS;
+  static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+  AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  AtomicLong total = new AtomicLong();
+  AtomicLong sum = new AtomicLong();
+  AtomicLong max = new AtomicLong();
+
+  public void record(long nanos)
+    {
+      if (nanos < 0) nanos = 0;
+      counts.incrementAndGet(bucketOf(nanos));
+      total.incrementAndGet();
+      sum.addAndGet(nanos);
+
+      long old;
+      while (nanos > (old = max.get()))
+	{
+	  if (max.compareAndSet(old, nanos)) break;
+	}
+    }
+
+  static int bucketOf(long value)
+    {
+      if (value < SUB_BUCKETS) return (int)value;
+      int exp = 63 - Long.numberOfLeadingZeros(value);
+      int mantissa = (int)(value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+      return (exp - SUB_BITS + 1) * SUB_BUCKETS + mantissa;
+    }
+
+  static long lowerBound(int bucket)
+    {
+      if (bucket < SUB_BUCKETS) return bucket;
+      int exp = bucket / SUB_BUCKETS + SUB_BITS - 1;
+      long mantissa = SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1));
+      return mantissa << (exp - SUB_BITS);
+    }
+
+  public long getCount()
+    {
+      return total.get();
+    }
+
+  public long getMax()
+    {
+      return max.get();
+    }
+
+  public double getMean()
+    {
+      long n = total.get();
+      return (n == 0) ? 0 : (double)sum.get() / n;
+    }
+
+  //##### Value below which the given percentage (0-100) of samples fall.
+  //##### The lower bound of the bucket is returned, so it is never high.
+  public long getPercentile(double percent)
+    {
+      long n = total.get();
+      if (n == 0) return 0;
+
+      long wanted = (long)Math.ceil(n * percent / 100);
+      if (wanted < 1) wanted = 1;
+
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++)
+	{
+	  seen += counts.get(i);
+	  if (seen >= wanted) return lowerBound(i);
+	}
+      return max.get();
+    }
+
+  public void reset()
+    {
+      for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+      total.set(0);
+      sum.set(0);
+      max.set(0);
+    }
+}
@@ -0,0 +1,186 @@
+//==============================================================================
+//  Filename:       RenderScaler.java
+//  Purpose:        Dynamic resolution for the 3D maze view.  The view is drawn
+//                  into a raster that may be smaller than the applet, through
+//                  a scaling transform so the view port keeps drawing in
+//                  applet coordinates, and is then stretched onto the frame in
+//                  a single blit.  The scale is chosen from the measured frame
+//                  time: it steps down when frames keep going over budget and
+//                  steps back up once there is plenty of headroom again.  A
+//                  single slow frame, such as a garbage collection or the
+//                  first frames while the JIT warms up, does not change it.
+//                  The HUD is drawn afterwards, straight onto the frame, at
+//                  full size.
+//==============================================================================
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public class RenderScaler
+{
+    //--------------------------------------------------------------------------
+    //  Scales the view may be rendered at, from full size down.
+    //--------------------------------------------------------------------------
+    static final float      SCALES[] = { 1.0f, 0.85f, 0.7f, 0.6f, 0.5f };
+
+    //--------------------------------------------------------------------------
+    //  Frames in a row that must be over budget before scaling down, and
+    //  well under budget before scaling up, so the scale does not flip back
+    //  and forth.  At the ten frames a second of a running game that is 0.3
+    //  and 1 seconds.
+    //--------------------------------------------------------------------------
+    static final int        FRAMES_BEFORE_DOWN = 3;
+    static final int        FRAMES_BEFORE_UP = 10;
+
+    private Dimension       size;           //full size of the view.
+    private long            budget;         //frame budget in nanoseconds.
+    private int             scaleIndex;     //index into SCALES.
+    private int             fastFrames;     //frames under budget in a row.
+    private int             slowFrames;     //frames over budget in a row.
+    private long            frameStart;     //nanoTime the frame started.
+    private long            averageTime;    //smoothed frame time.
+    private BufferedImage   scene;          //reduced size raster.
+    private Graphics2D      sceneContext;   //graphics for the raster.
+    private Graphics2D      target;         //frame the scene is drawn on.
+
+    //--------------------------------------------------------------------------
+    //  RenderScaler()
+    //
+    //  Takes the full size of the view, which is read each frame so resizes
+    //  are picked up, and the frame budget in milliseconds.
+    //
+    //--------------------------------------------------------------------------
+    public RenderScaler(Dimension size, long budgetMillis)
+    {
+        this.size = size;
+        this.budget = budgetMillis * 1000000L;
+        averageTime = 0;
+        scaleIndex = 0;
+    }
+
+    //--------------------------------------------------------------------------
+    //  beginScene()
+    //
+    //  Starts timing the frame and returns the graphics context the 3D view
+    //  should be drawn on.  At full scale this is the frame itself.
+    //
+    //--------------------------------------------------------------------------
+    public Graphics2D beginScene(Graphics2D frame)
+    {
+        frameStart = System.nanoTime();
+        target = frame;
+
+        if(scaleIndex == 0)
+        {
+            return frame;
+        }
+
+        float scale = SCALES[scaleIndex];
+        int width = Math.max(1, Math.round(size.width * scale));
+        int height = Math.max(1, Math.round(size.height * scale));
+
+        if(scene == null || scene.getWidth() != width || scene.getHeight() != height)
+        {
+            if(sceneContext != null)
+            {
+                sceneContext.dispose();
+            }
+            scene = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            sceneContext = scene.createGraphics();
+            sceneContext.scale((double)width / size.width,
+                               (double)height / size.height);
+        }
+        return sceneContext;
+    }
+
+    //--------------------------------------------------------------------------
+    //  endScene()
+    //
+    //  Stretches the reduced raster over the frame.  Does nothing at full
+    //  scale, since the view was drawn on the frame directly.
+    //
+    //--------------------------------------------------------------------------
+    public void endScene()
+    {
+        if(scaleIndex == 0)
+        {
+            return;
+        }
+
+        Object hint = target.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        target.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        target.drawImage(scene, 0, 0, size.width, size.height, null);
+        target.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                (hint != null) ? hint
+                                : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    }
+
+    //--------------------------------------------------------------------------
+    //  endFrame()
+    //
+    //  Called once everything, HUD included, has been drawn.  Updates the
+    //  smoothed frame time and picks the scale for the next frame.  The
+    //  smoothed time carries on across scale changes; a step down needs
+    //  FRAMES_BEFORE_DOWN frames in a row that are slow themselves while the
+    //  average is over budget too, so the old slow frames do not push a new
+    //  scale straight down again.
+    //
+    //--------------------------------------------------------------------------
+    public void endFrame()
+    {
+        long elapsed = System.nanoTime() - frameStart;
+
+        averageTime = (averageTime == 0) ? elapsed
+                      : averageTime + (elapsed - averageTime) / 8;
+
+        if(elapsed > budget && averageTime > budget)
+        {
+            fastFrames = 0;
+            if(++slowFrames >= FRAMES_BEFORE_DOWN && scaleIndex < SCALES.length - 1)
+            {
+                slowFrames = 0;
+                scaleIndex++;
+            }
+        }
+        else if(averageTime < budget / 2 && scaleIndex > 0)
+        {
+            slowFrames = 0;
+            if(++fastFrames >= FRAMES_BEFORE_UP)
+            {
+                fastFrames = 0;
+                scaleIndex--;
+            }
+        }
+        else
+        {
+            fastFrames = 0;
+            slowFrames = 0;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  getScale()
+    //
+    //  Returns the scale the view is currently rendered at.
+    //
+    //--------------------------------------------------------------------------
+    public float getScale()
+    {
+        return SCALES[scaleIndex];
+    }
+
+    //--------------------------------------------------------------------------
+    //  reset()
+    //
+    //  Goes back to full resolution, for example when a new level starts.
+    //
+    //--------------------------------------------------------------------------
+    public void reset()
+    {
+        scaleIndex = 0;
+        fastFrames = 0;
+        slowFrames = 0;
+        averageTime = 0;
+    }
+}
@@ -0,0 +1,98 @@
+//==============================================================================
+//  Filename:       RenderScheduler.java
+//  Purpose:        Paces the ticker thread of DeathTrap.  Each state has a
+//                  frame time, and states whose screens stop changing after a
+//                  while also have a settle time and a keyframe time: once
+//                  settleMillis have passed with nothing happening, frames
+//                  come only every keyframeMillis, or not at all if that is 0,
+//                  until wake() is called.  wake() also ends the current wait
+//                  at once, so a key press is drawn straight away instead of
+//                  at the next tick.
+//
+//  Notes:          The ticker calls waitForFrame() between frames; anything
+//                  else calls wake() when the screen has to change.
+//==============================================================================
+
+public class RenderScheduler
+{
+    //--------------------------------------------------------------------------
+    //  Settle time of states that never go idle.
+    //--------------------------------------------------------------------------
+    static final long       NEVER = -1;
+
+    private long            frameMillis;
+    private long            settleMillis = NEVER;
+    private long            keyframeMillis;
+    private long            activeUntil;    //time to go idle.
+    private boolean         woken;          //wake() since the last frame.
+    private long            idleFrames;     //frames drawn while idle.
+
+    //--------------------------------------------------------------------------
+    //  setRate()
+    //
+    //  Sets the pacing for a new state and starts it at full rate.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized void setRate(long frameMillis, long settleMillis,
+                                     long keyframeMillis)
+    {
+        this.frameMillis = frameMillis;
+        this.settleMillis = settleMillis;
+        this.keyframeMillis = keyframeMillis;
+        wake();
+    }
+
+    //--------------------------------------------------------------------------
+    //  wake()
+    //
+    //  Goes back to full rate for another settle time and ends the wait of
+    //  the ticker.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized void wake()
+    {
+        activeUntil = System.currentTimeMillis() + settleMillis;
+        woken = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isIdle()
+    {
+        return settleMillis != NEVER && System.currentTimeMillis() >= activeUntil;
+    }
+
+    //--------------------------------------------------------------------------
+    //  waitForFrame()
+    //
+    //  Waits until the next frame is due: a frame time at full rate, the
+    //  keyframe time when idle, or until wake() if idle with no keyframes.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized void waitForFrame() throws InterruptedException
+    {
+        if(!woken)
+        {
+            if(isIdle())
+            {
+                idleFrames++;
+                wait(keyframeMillis);
+            }
+            else
+            {
+                wait(frameMillis);
+            }
+        }
+        woken = false;
+    }
+
+    //--------------------------------------------------------------------------
+    //  getIdleFrames()
+    //
+    //  Returns the number of frames that were paced at the keyframe rate.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized long getIdleFrames()
+    {
+        return idleFrames;
+    }
+}
@@ -0,0 +1,247 @@
+package cannon;
+
+/*########################################################################
+ *
+ * ShotAnalytics
+ *
+ *   Reads a ShotLog.  The log is mapped read only and the records are
+ * read in place with absolute gets, so nothing is copied or allocated
+ * per record.  A scan splits the records into one slice per processor
+ * and tallies the slices in parallel, each into its own Tally, which
+ * are added up at the end.
+ *
+ *   The tally is of shots and hits by angle bucket and wind, which is
+ * enough for hit rates by angle, by wind, or both.  Run with
+ *
+ *     java cannon.ShotAnalytics shots.log [-generate n] [bucket]
+ *
+ * to print hit rates by angle bucket (default 10 degrees) and wind.
+ * -generate appends n simulated shots to the log first.
+ *
+ ######################################################################*/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+public class ShotAnalytics
+{
+  static final int WINDS = 21;			// -10 to 10
+  static final int MAX_ANGLE = 90;
+
+  //##### Largest mapping, kept a whole number of records
+  static final long SLICE = (Integer.MAX_VALUE / ShotLog.RECORD) * (long)ShotLog.RECORD;
+
+  MappedByteBuffer maps[];
+  long count;
+
+  public ShotAnalytics(File name) throws IOException
+    {
+      RandomAccessFile file = new RandomAccessFile(name, "r");
+      try
+	{
+	  FileChannel channel = file.getChannel();
+	  MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						ShotLog.HEADER);
+	  if (header.getInt(0) != ShotLog.MAGIC || header.getInt(4) != ShotLog.RECORD)
+	    throw new IOException(name + " is not a shot log");
+	  count = header.getLong(8);
+
+	  long bytes = count * ShotLog.RECORD;
+	  maps = new MappedByteBuffer[(int)((bytes + SLICE - 1) / SLICE)];
+	  for (int i = 0; i < maps.length; i++)
+	    maps[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+				  ShotLog.HEADER + i * SLICE,
+				  Math.min(SLICE, bytes - i * SLICE));
+	}
+      finally
+	{
+	  file.close();			// the mappings stay valid
+	}
+    }
+
+  public long getCount()
+    {
+      return count;
+    }
+
+  //##### Shots and hits by angle bucket and wind
+  public static class Tally
+    {
+      public final int bucket;
+      public final long shots[][], hits[][];
+
+      public Tally(int bucket)
+	{
+	  this.bucket = bucket;
+	  shots = new long[MAX_ANGLE / bucket + 1][WINDS];
+	  hits = new long[MAX_ANGLE / bucket + 1][WINDS];
+	}
+
+      void add(int angle, int wind, boolean hit)
+	{
+	  int a = Math.min(angle, MAX_ANGLE) / bucket;
+	  int w = Math.max(-10, Math.min(10, wind)) + 10;
+	  shots[a][w]++;
+	  if (hit) hits[a][w]++;
+	}
+
+      void add(Tally other)
+	{
+	  for (int a = 0; a < shots.length; a++)
+	    for (int w = 0; w < WINDS; w++)
+	      {
+		shots[a][w] += other.shots[a][w];
+		hits[a][w] += other.hits[a][w];
+	      }
+	}
+
+      public int getBuckets()
+	{
+	  return shots.length;
+	}
+
+      //##### Hit rate in one angle bucket at one wind, NaN if no shots
+      public double hitRate(int a, int wind)
+	{
+	  int w = wind + 10;
+	  return (double)hits[a][w] / shots[a][w];
+	}
+
+      //##### Hit rate in one angle bucket over all winds
+      public double hitRate(int a)
+	{
+	  long s = 0, h = 0;
+	  for (int w = 0; w < WINDS; w++)
+	    {
+	      s += shots[a][w];
+	      h += hits[a][w];
+	    }
+	  return (double)h / s;
+	}
+    }
+
+  //##### Tallies records [from, to) on the calling thread
+  Tally tally(int bucket, long from, long to)
+    {
+      Tally tally = new Tally(bucket);
+      for (long r = from; r < to; r++)
+	{
+	  long at = r * ShotLog.RECORD;
+	  MappedByteBuffer map = maps[(int)(at / SLICE)];
+	  int i = (int)(at % SLICE);
+	  tally.add(map.get(i + 8) & 0xff, map.get(i + 12),
+		    (map.get(i + 13) & ShotLog.HIT) != 0);
+	}
+      return tally;
+    }
+
+  //##### Tallies every record, one slice per processor
+  public Tally scan(final int bucket) throws InterruptedException
+    {
+      int threads = Runtime.getRuntime().availableProcessors();
+      long per = Math.max(1, (count + threads - 1) / threads);
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      List<Future<Tally>> parts = new ArrayList<Future<Tally>>();
+
+      try
+	{
+	  for (long from = 0; from < count; from += per)
+	    {
+	      final long start = from, end = Math.min(count, from + per);
+	      parts.add(pool.submit(new Callable<Tally>() {
+		  public Tally call() {
+		    return tally(bucket, start, end);
+		  }
+		}));
+	    }
+
+	  Tally total = new Tally(bucket);
+	  for (Future<Tally> part : parts)
+	    total.add(part.get());
+	  return total;
+	}
+      catch (ExecutionException e)
+	{
+	  throw new RuntimeException(e.getCause());
+	}
+      finally
+	{
+	  pool.shutdown();
+	}
+    }
+
+  //##### Appends n shots at random settings, flown with FixedTrajectory
+  static void generate(File name, long n) throws IOException
+    {
+      ShotLog log = new ShotLog(name);
+      FixedTrajectory shell = new FixedTrajectory();
+      Random random = new Random(n);
+
+      for (long i = 0; i < n; i++)
+	{
+	  int a = 1 + random.nextInt(80), v = 1 + random.nextInt(28);
+	  int g = 40 + random.nextInt(151), w = random.nextInt(20) - 10;
+	  shell.launchValues(a, v, g, w, 600, 300);
+	  boolean hit = shell.fly();
+	  while (!log.record(a, v, g, w, hit, true, shell.x, shell.y, shell.getSteps()))
+	    Thread.yield();
+	}
+      log.close();
+    }
+
+  public static void main(String args[]) throws Exception
+    {
+      File name = null;
+      int bucket = 10;
+      long generate = 0;
+
+      for (int i = 0; i < args.length; i++)
+	{
+	  if (args[i].equals("-generate"))
+	    {
+	      if (++i == args.length) usage();
+	      generate = Long.parseLong(args[i]);
+	    }
+	  else if (name == null) name = new File(args[i]);
+	  else bucket = Integer.parseInt(args[i]);
+	}
+      if (name == null || bucket <= 0) usage();
+      if (generate > 0) generate(name, generate);
+
+      ShotAnalytics analytics = new ShotAnalytics(name);
+      long start = System.nanoTime();
+      Tally tally = analytics.scan(bucket);
+      long nanos = System.nanoTime() - start;
+
+      System.out.print("angle");
+      for (int w = -10; w <= 10; w += 5) System.out.print("\twind " + w);
+      System.out.println("\tall");
+      for (int a = 0; a < tally.getBuckets(); a++)
+	{
+	  System.out.print(a * bucket);
+	  for (int w = -10; w <= 10; w += 5)
+	    System.out.print("\t" + percent(tally.hitRate(a, w)));
+	  System.out.println("\t" + percent(tally.hitRate(a)));
+	}
+      System.out.println(analytics.getCount() + " shots scanned in "
+			 + nanos / 1000000 + " ms");
+    }
+
+  static void usage()
+    {
+      System.err.println("usage: java cannon.ShotAnalytics shots.log [-generate n] [bucket]");
+      System.exit(2);
+    }
+
+  static String percent(double rate)
+    {
+      return Double.isNaN(rate) ? "-" : Math.round(rate * 1000) / 10.0 + "%";
+    }
+}
@@ -0,0 +1,189 @@
+package cannon;
+
+/*########################################################################
+ *
+ * ShotLog
+ *
+ *   Append only file of every shot cannon fires.  The file is a HEADER
+ * followed by fixed size records:
+ *
+ *     0  magic     (int) "CSL1"
+ *     4  record    (int) RECORD, the size of one record
+ *     8  count     (long) records written so far
+ *
+ *   and each record, big endian:
+ *
+ *     0  time      (long) milliseconds since 1970
+ *     8  angle     scrollbar values, as in DuelMessage
+ *     9  velocity
+ *    10  gravity   (short)
+ *    12  wind      (signed)
+ *    13  flags     HIT, FIXED
+ *    14  x, y      (short) where the shell hit or left the field
+ *    18  unused    (short)
+ *    20  steps     (int) length of the flight
+ *
+ *   The file is written through memory mapped regions of REGION records,
+ * mapping the next one as each fills.  count is updated after a record
+ * is complete, so a reader never sees half a record, and a log that was
+ * not closed properly loses at most the shot being written.
+ *
+ *   record() is called from paint() and never waits: it puts the shot
+ * in a queue for a background thread to write.  If the writer falls
+ * QUEUE shots behind, new shots are counted in getDropped() and lost.
+ *
+ ######################################################################*/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ShotLog implements Runnable
+{
+  static final int MAGIC = 0x43534c31;		// "CSL1"
+  static final int HEADER = 16;
+  static final int RECORD = 24;
+  static final int REGION = 1 << 16;		// records per mapping
+  static final int QUEUE = 1024;
+
+  public static final int HIT = 1, FIXED = 2;
+
+  //##### One shot on its way to the file
+  static class Shot
+    {
+      long time;
+      int angle, velocity, gravity, wind, flags, x, y, steps;
+    }
+
+  RandomAccessFile file;
+  FileChannel channel;
+  MappedByteBuffer header, region;
+  long count, regionStart;
+
+  ArrayBlockingQueue<Shot> queue = new ArrayBlockingQueue<Shot>(QUEUE);
+  AtomicLong dropped = new AtomicLong();
+  Thread writer;
+  volatile boolean closing;
+
+  public ShotLog(File name) throws IOException
+    {
+      file = new RandomAccessFile(name, "rw");
+      channel = file.getChannel();
+      header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+
+      if (file.length() == HEADER && header.getInt(0) == 0)
+	{
+	  header.putInt(0, MAGIC);
+	  header.putInt(4, RECORD);
+	  header.putLong(8, 0);
+	}
+      else if (header.getInt(0) != MAGIC || header.getInt(4) != RECORD)
+	{
+	  channel.close();
+	  throw new IOException(name + " is not a shot log");
+	}
+      count = header.getLong(8);
+      mapRegion();
+
+      writer = new Thread(this, "ShotLog");
+      writer.setDaemon(true);
+      writer.start();
+    }
+
+  //##### Queues a shot; false if it had to be dropped
+  public boolean record(int angle, int velocity, int gravity, int wind,
+			boolean hit, boolean fixed, double x, double y, int steps)
+    {
+      Shot shot = new Shot();
+      shot.time = System.currentTimeMillis();
+      shot.angle = angle;
+      shot.velocity = velocity;
+      shot.gravity = gravity;
+      shot.wind = wind;
+      shot.flags = (hit ? HIT : 0) | (fixed ? FIXED : 0);
+      shot.x = (int)x;
+      shot.y = (int)y;
+      shot.steps = steps;
+
+      if (closing || !queue.offer(shot))
+	{
+	  dropped.incrementAndGet();
+	  return false;
+	}
+      return true;
+    }
+
+  public long getDropped()
+    {
+      return dropped.get();
+    }
+
+  //##### Records written to the file so far
+  public synchronized long getCount()
+    {
+      return count;
+    }
+
+  public void run()
+    {
+      try
+	{
+	  while (!closing || !queue.isEmpty())
+	    {
+	      Shot shot = queue.poll(100, TimeUnit.MILLISECONDS);
+	      if (shot != null) write(shot);
+	    }
+	}
+      catch (InterruptedException e) {}
+      catch (IOException e)
+	{
+	  System.err.println("ShotLog: " + e);
+	}
+    }
+
+  synchronized void write(Shot shot) throws IOException
+    {
+      if (count - regionStart == REGION) mapRegion();
+
+      int at = (int)(count - regionStart) * RECORD;
+      region.putLong(at, shot.time);
+      region.put(at + 8, (byte)shot.angle);
+      region.put(at + 9, (byte)shot.velocity);
+      region.putShort(at + 10, (short)shot.gravity);
+      region.put(at + 12, (byte)shot.wind);
+      region.put(at + 13, (byte)shot.flags);
+      region.putShort(at + 14, (short)shot.x);
+      region.putShort(at + 16, (short)shot.y);
+      region.putShort(at + 18, (short)0);
+      region.putInt(at + 20, shot.steps);
+
+      header.putLong(8, ++count);
+    }
+
+  //##### Maps the region count falls in, growing the file to hold it
+  void mapRegion() throws IOException
+    {
+      regionStart = count - count % REGION;
+      region = channel.map(FileChannel.MapMode.READ_WRITE,
+			   HEADER + regionStart * RECORD, (long)REGION * RECORD);
+    }
+
+  //##### Writes what is queued, then closes.  The file keeps the unused
+  //##### end of the last region; readers go by count.
+  public void close() throws IOException
+    {
+      closing = true;
+      try { writer.join(); } catch (InterruptedException e) {}
+      synchronized (this)
+	{
+	  region.force();
+	  header.force();
+	  channel.close();
+	}
+    }
+}
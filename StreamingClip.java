@@ -0,0 +1,220 @@
+//==============================================================================
+//  Filename:       StreamingClip.java
+//  Purpose:        AudioClip for a long music track that is streamed from its
+//                  URL by a MusicStreamer instead of being loaded whole.
+//                  Making one does no I/O, so it can stand in for the clips
+//                  from getAudioClip() without holding up init(), and only a
+//                  playing clip holds any audio: its open stream and line.
+//
+//  Notes:          play(), loop() and stop() only pass a request to the
+//                  streamer's thread and return at once.  Everything else here
+//                  is used by that thread only.
+//==============================================================================
+
+import java.applet.AudioClip;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.net.URL;
+import javax.sound.sampled.*;
+
+public class StreamingClip implements AudioClip
+{
+    static final int        NONE = 0, PLAY = 1, LOOP = 2, STOP = 3;
+
+    //--------------------------------------------------------------------------
+    //  Size of the line's own buffer, in milliseconds of sound.  Reopening the
+    //  track at the end of a loop is hidden behind this much queued sound.
+    //--------------------------------------------------------------------------
+    static final int        LINE_MILLIS = 500;
+
+    private URL             url;
+    private MusicStreamer   streamer;
+    int                     request;            //guarded by the streamer.
+
+    private AudioInputStream stream;
+    private SourceDataLine  line;
+    private boolean         looping;
+
+    //--------------------------------------------------------------------------
+    //  StreamingClip()
+    //
+    //  Takes the track and the streamer that plays it.
+    //
+    //--------------------------------------------------------------------------
+    public StreamingClip(URL url, MusicStreamer streamer)
+    {
+        this.url = url;
+        this.streamer = streamer;
+    }
+
+    public void play()
+    {
+        streamer.request(this, PLAY);
+    }
+
+    public void loop()
+    {
+        streamer.request(this, LOOP);
+    }
+
+    public void stop()
+    {
+        streamer.request(this, STOP);
+    }
+
+    //--------------------------------------------------------------------------
+    //  start()
+    //
+    //  Plays the track from the beginning, reusing the line if the format has
+    //  not changed.  Returns false if it cannot be played.
+    //
+    //--------------------------------------------------------------------------
+    boolean start(boolean loop)
+    {
+        looping = loop;
+        closeStream();
+        try
+        {
+            stream = open();
+            AudioFormat format = stream.getFormat();
+            if(line != null && !line.getFormat().matches(format))
+            {
+                closeLine();
+            }
+            if(line == null)
+            {
+                line = AudioSystem.getSourceDataLine(format);
+                int frames = (int)(format.getFrameRate() * LINE_MILLIS / 1000);
+                line.open(format, frames * format.getFrameSize());
+            }
+            line.flush();
+            line.start();
+            return true;
+        }
+        catch(Exception e)
+        {
+            System.err.println(url + ": " + e);
+            finish();
+            return false;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  open()
+    //
+    //  Opens the track as signed PCM, converting it if it is stored in some
+    //  other encoding, as .au files usually are.
+    //
+    //--------------------------------------------------------------------------
+    private AudioInputStream open() throws IOException, UnsupportedAudioFileException
+    {
+        AudioInputStream in = AudioSystem.getAudioInputStream(
+            new BufferedInputStream(url.openStream()));
+        AudioFormat format = in.getFormat();
+
+        if(format.getEncoding() != AudioFormat.Encoding.PCM_SIGNED)
+        {
+            AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+                format.getSampleRate(), 16, format.getChannels(),
+                format.getChannels() * 2, format.getSampleRate(), false);
+            in = AudioSystem.getAudioInputStream(pcm, in);
+        }
+        return in;
+    }
+
+    //--------------------------------------------------------------------------
+    //  pump()
+    //
+    //  Moves as much of the track into the line as it has room for, without
+    //  blocking, through the streamer's buffer.  At the end of the track a
+    //  looping clip starts over straight away, so the line never runs dry
+    //  between the end and the beginning.  Returns the bytes written, or -1
+    //  once the clip has finished playing.
+    //
+    //--------------------------------------------------------------------------
+    int pump(byte buffer[]) throws IOException
+    {
+        if(stream == null)
+        {
+            //------------------------------------------------------------------
+            //  Whole track written; done when the line has played it out.
+            //------------------------------------------------------------------
+            if(line != null && line.available() < line.getBufferSize())
+            {
+                return 0;
+            }
+            finish();
+            return -1;
+        }
+
+        int frameSize = stream.getFormat().getFrameSize();
+        int room = Math.min(line.available(), buffer.length);
+        room -= room % frameSize;
+        int written = 0;
+
+        while(room > 0)
+        {
+            int n = stream.read(buffer, 0, room);
+            if(n < 0)
+            {
+                if(!looping)
+                {
+                    closeStream();
+                    return written;
+                }
+                closeStream();
+                try
+                {
+                    stream = open();
+                }
+                catch(UnsupportedAudioFileException e)
+                {
+                    throw new IOException(e.toString());
+                }
+                continue;
+            }
+            line.write(buffer, 0, n);
+            written += n;
+            room -= n;
+        }
+        return written;
+    }
+
+    //--------------------------------------------------------------------------
+    //  finish()
+    //
+    //  Stops playing and lets go of the stream and the line.
+    //
+    //--------------------------------------------------------------------------
+    void finish()
+    {
+        closeStream();
+        closeLine();
+    }
+
+    private void closeStream()
+    {
+        if(stream != null)
+        {
+            try
+            {
+                stream.close();
+            }
+            catch(IOException e)
+            {
+            }
+            stream = null;
+        }
+    }
+
+    private void closeLine()
+    {
+        if(line != null)
+        {
+            line.stop();
+            line.flush();
+            line.close();
+            line = null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+//==============================================================================
+//  Filename:       SyntheticFrame.java
+//  Purpose:        One phase of a DeathTrap RUNNING frame on a generated maze,
+//                  drawn into an offscreen BufferedImage.  Each run moves the
+//                  player one step along a fixed random walk and does the work
+//                  of the phase for the new cell:
+//                  a. "visible": gathers the cells in view from the level's
+//                     VisibilitySet, as the view port does.
+//                  b. "minimap": reveals and draws the tiled minimap, as
+//                     DeathTrap.drawMinimap() does for a large maze.
+//
+//  Notes:          Used by DeathTrapBenchmarks and, through perf.Benchmark,
+//                  by the JMH module, which cannot name a class in the default
+//                  package and loads this one by name instead.
+//==============================================================================
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import perf.Benchmark;
+
+public class SyntheticFrame extends Benchmark
+{
+    static final String     PHASES[] = { "visible", "minimap" };
+    static final int        WIDTH = 640, HEIGHT = 480;
+    static final int        STEPS = 4096;   //length of the walk, in moves.
+
+    //--------------------------------------------------------------------------
+    //  The minimap as DeathTrap draws it.  Copied rather than read from
+    //  DeathTrap, so the JMH module does not have to compile the applet.
+    //--------------------------------------------------------------------------
+    static final int        MINIMAP_SIZE = 120;
+    static final int        MINIMAP_CELL = 4;
+
+    private boolean         minimapPhase;   //else the visible phase.
+    private int             size;
+    private int             cells[][];
+    private VisibilitySet   visible;
+    private MinimapTiles    minimap;
+    private int             walkX[], walkY[];
+    private int             step;
+    private BufferedImage   frame;
+    private Graphics2D      context;
+
+    //--------------------------------------------------------------------------
+    //  SyntheticFrame()
+    //
+    //  Takes the phase, one of PHASES, and the size in cells of the square
+    //  maze to generate.
+    //
+    //--------------------------------------------------------------------------
+    public SyntheticFrame(String phase, int size)
+    {
+        super("deathtrap.frame." + phase + "." + size);
+        if(!phase.equals(PHASES[0]) && !phase.equals(PHASES[1]))
+        {
+            throw new IllegalArgumentException("unknown phase " + phase);
+        }
+        minimapPhase = phase.equals(PHASES[1]);
+        this.size = size;
+    }
+
+    public void setUp()
+    {
+        cells = VisibilityBenchmark.generateMaze(size, size);
+        visible = new VisibilitySet(cells);
+        minimap = new MinimapTiles(cells, MINIMAP_CELL);
+        frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        context = frame.createGraphics();
+
+        //----------------------------------------------------------------------
+        //  Every move of the walk changes cell, so the minimap always has a
+        //  new position to update from.
+        //----------------------------------------------------------------------
+        Random random = new Random(42);
+        walkX = new int[STEPS];
+        walkY = new int[STEPS];
+        int x = 1, y = 1;
+        for(int i = 0; i < STEPS; )
+        {
+            int nx = x + random.nextInt(3) - 1;
+            int ny = y + random.nextInt(3) - 1;
+            if((nx != x || ny != y) && cells[ny][nx] == VisibilitySet.OPEN)
+            {
+                walkX[i] = x = nx;
+                walkY[i] = y = ny;
+                i++;
+            }
+        }
+        step = 0;
+    }
+
+    public long run()
+    {
+        int x = walkX[step];
+        int y = walkY[step];
+        step = (step + 1) % STEPS;
+
+        if(!minimapPhase)
+        {
+            return countVisible(x, y);
+        }
+
+        minimap.update(x, y, visible);
+        minimap.draw(context, WIDTH - MINIMAP_SIZE - 10, 10,
+                     MINIMAP_SIZE, x, y);
+        return frame.getRGB(WIDTH - MINIMAP_SIZE / 2 - 10,
+                            MINIMAP_SIZE / 2 + 10);
+    }
+
+    //--------------------------------------------------------------------------
+    //  countVisible()
+    //
+    //  Tests every cell within VisibilitySet.RADIUS of the player against the
+    //  set and counts the ones in view.
+    //
+    //--------------------------------------------------------------------------
+    private int countVisible(int px, int py)
+    {
+        int r = VisibilitySet.RADIUS;
+        int seen = 0;
+
+        for(int y = Math.max(0, py - r); y <= Math.min(size - 1, py + r); y++)
+        {
+            for(int x = Math.max(0, px - r); x <= Math.min(size - 1, px + r); x++)
+            {
+                if(visible.isVisible(px, py, x, y))
+                {
+                    seen++;
+                }
+            }
+        }
+        return seen;
+    }
+}
@@ -0,0 +1,168 @@
+package cannon;
+
+/*########################################################################
+ *
+ * Terrain
+ *
+ *   Ground for cannon as one height per pixel column: the y of the top
+ * of the ground in that column.  A shell hits the ground when its y
+ * reaches the height of its column, which is one array lookup.
+ *
+ *   Columns are stored in chunks of CHUNK columns.  Every chunk starts
+ * out sharing one flat chunk and only gets its own copy the first time
+ * it is carved, so a field much wider than the screen costs next to
+ * nothing until it is shot up.
+ *
+ *   carve() digs a round crater and remembers the range of columns it
+ * touched; drawDirty() redraws just those columns, while drawAll() is
+ * for full repaints.  Both draw only the columns seen by a camera at
+ * cameraX, viewWidth columns wide, with runs of equal height drawn as
+ * one rectangle.  They draw in field coordinates: the caller translates
+ * the Graphics by -cameraX.
+ *
+ ######################################################################*/
+
+import java.awt.*;
+
+public class Terrain
+{
+  static final int CHUNK_BITS = 8;
+  static final int CHUNK = 1 << CHUNK_BITS;
+  static final Color GROUND = new Color(107, 79, 42);
+
+  int width, groundY, floorY;
+  short chunks[][];
+  short flat[];
+
+  //##### Columns changed since the last draw, and the highest the ground
+  //##### was in them before it changed
+  int dirtyFrom, dirtyTo, dirtyTop;
+
+  //##### width in columns; ground starts flat at groundY and can be dug
+  //##### down to floorY, the bottom of the field
+  public Terrain(int width, int groundY, int floorY)
+    {
+      this.width = width;
+      this.groundY = groundY;
+      this.floorY = floorY;
+
+      flat = new short[CHUNK];
+      for (int i = 0; i < CHUNK; i++) flat[i] = (short)groundY;
+
+      chunks = new short[(width + CHUNK - 1) >> CHUNK_BITS][];
+      for (int c = 0; c < chunks.length; c++) chunks[c] = flat;
+      clean();
+    }
+
+  //##### Copy that later carving does not change, for flying shells on
+  //##### other threads.  Only the carved chunks are copied.
+  public Terrain copy()
+    {
+      Terrain t = new Terrain(width, groundY, floorY);
+      for (int c = 0; c < chunks.length; c++)
+	if (chunks[c] != flat) t.chunks[c] = chunks[c].clone();
+      return t;
+    }
+
+  public int getWidth()
+    {
+      return width;
+    }
+
+  //##### Top of the ground in a column; nothing outside the field
+  public int surface(int x)
+    {
+      if (x < 0 || x >= width) return floorY;
+      return chunks[x >> CHUNK_BITS][x & (CHUNK - 1)];
+    }
+
+  public boolean collides(double x, double y)
+    {
+      return y >= surface((int)x);
+    }
+
+  //##### Digs out a circle of the given radius around (cx, cy)
+  public void carve(int cx, int cy, int radius)
+    {
+      int from = Math.max(0, cx - radius);
+      int to = Math.min(width - 1, cx + radius);
+
+      for (int x = from; x <= to; x++)
+	{
+	  int dx = x - cx;
+	  int bottom = cy + (int)Math.sqrt(radius * radius - dx * dx);
+	  if (bottom > floorY) bottom = floorY;
+
+	  int top = surface(x);
+	  if (top >= bottom) continue;
+
+	  short column[] = chunks[x >> CHUNK_BITS];
+	  if (column == flat)
+	    column = chunks[x >> CHUNK_BITS] = flat.clone();
+	  column[x & (CHUNK - 1)] = (short)bottom;
+
+	  if (x < dirtyFrom) dirtyFrom = x;
+	  if (x > dirtyTo) dirtyTo = x;
+	  if (top < dirtyTop) dirtyTop = top;
+	}
+    }
+
+  public boolean isDirty()
+    {
+      return dirtyFrom <= dirtyTo;
+    }
+
+  //##### Redraws the columns carved since the last draw, as far as the
+  //##### camera sees them; the rest are drawn when it scrolls to them
+  public void drawDirty(Graphics g, int cameraX, int viewWidth)
+    {
+      if (!isDirty()) return;
+
+      int from = Math.max(dirtyFrom, cameraX);
+      int to = Math.min(dirtyTo, cameraX + viewWidth - 1);
+      if (from <= to)
+	{
+	  g.clearRect(from, dirtyTop, to - from + 1, floorY - dirtyTop);
+	  drawColumns(g, from, to);
+	}
+      clean();
+    }
+
+  public void drawAll(Graphics g, int cameraX, int viewWidth)
+    {
+      drawColumns(g, Math.max(0, cameraX), Math.min(width, cameraX + viewWidth) - 1);
+      clean();
+    }
+
+  void drawColumns(Graphics g, int from, int to)
+    {
+      g.setColor(GROUND);
+      int start = from;
+      while (start <= to)
+	{
+	  int top = surface(start);
+	  int end = start + 1;
+	  while (end <= to && surface(end) == top) end++;
+	  if (top < floorY)
+	    g.fillRect(start, top, end - start, floorY - top);
+	  start = end;
+	}
+    }
+
+  void clean()
+    {
+      dirtyFrom = Integer.MAX_VALUE;
+      dirtyTo = Integer.MIN_VALUE;
+      dirtyTop = floorY;
+    }
+
+  //##### Camera position that keeps x in the middle of the view, without
+  //##### showing past either end of the field
+  public int follow(double x, int viewWidth)
+    {
+      int camera = (int)x - viewWidth / 2;
+      if (camera > width - viewWidth) camera = width - viewWidth;
+      if (camera < 0) camera = 0;
+      return camera;
+    }
+}
@@ -0,0 +1,126 @@
+//==============================================================================
+//  Filename:       TextureCache.java
+//  Purpose:        Bounded least recently used cache of wall textures.  A
+//                  texture is loaded from the images/textures/ directory and
+//                  turned into mip mapped texels the first time it is asked
+//                  for.  When the texels held go over the budget the textures
+//                  that were used longest ago are dropped, so level packs that
+//                  reference many textures still use a fixed amount of memory.
+//
+//  Notes:          Meant to be owned by ViewPort, which draws each wall
+//                  column with WallTexture.drawColumn().  ViewPort is not in
+//                  this tree, so DeathTrap does not create a cache; walls stay
+//                  flat shaded and no texels are loaded until the view draws
+//                  them.
+//==============================================================================
+
+import java.applet.Applet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+public class TextureCache
+{
+    private Applet          applet;         //used to load the images.
+    private int             maxTexels;      //budget for all cached textures.
+    private int             texelsHeld;     //texels currently in the cache.
+    private LinkedHashMap<String, WallTexture> textures;
+
+    //--------------------------------------------------------------------------
+    //  TextureCache()
+    //
+    //  Takes the applet the images are loaded through and the maximum number
+    //  of texels, across all mip levels, kept at once.
+    //
+    //--------------------------------------------------------------------------
+    public TextureCache(Applet applet, int maxTexels)
+    {
+        this.applet = applet;
+        this.maxTexels = maxTexels;
+
+        //----------------------------------------------------------------------
+        //  Access ordered, so iteration starts at the least recently used.
+        //----------------------------------------------------------------------
+        textures = new LinkedHashMap<String, WallTexture>(16, 0.75f, true);
+    }
+
+    //--------------------------------------------------------------------------
+    //  get()
+    //
+    //  Returns the named texture, loading it on a miss.  Returns null if the
+    //  image cannot be loaded, in which case the caller should fall back to
+    //  flat shading.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized WallTexture get(String name)
+    {
+        WallTexture texture = textures.get(name);
+
+        if(texture == null)
+        {
+            texture = WallTexture.grab(name,
+                applet.getImage(applet.getDocumentBase(), "images/textures/" + name));
+            if(texture == null)
+            {
+                return null;
+            }
+            put(texture);
+        }
+        return texture;
+    }
+
+    //--------------------------------------------------------------------------
+    //  put()
+    //
+    //  Adds an already built texture and evicts old ones to stay in budget.
+    //  The texture just added is never evicted, even if it alone is over
+    //  budget.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized void put(WallTexture texture)
+    {
+        WallTexture old = textures.put(texture.getName(), texture);
+        if(old != null)
+        {
+            texelsHeld -= old.getTexelCount();
+        }
+        texelsHeld += texture.getTexelCount();
+
+        //----------------------------------------------------------------------
+        //  The texture just put is the most recently used, so it is the last
+        //  one the iterator reaches.
+        //----------------------------------------------------------------------
+        Iterator<WallTexture> oldest = textures.values().iterator();
+        while(texelsHeld > maxTexels && oldest.hasNext())
+        {
+            WallTexture victim = oldest.next();
+            if(victim == texture)
+            {
+                break;
+            }
+            texelsHeld -= victim.getTexelCount();
+            oldest.remove();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  clear()
+    //
+    //  Drops every cached texture.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized void clear()
+    {
+        textures.clear();
+        texelsHeld = 0;
+    }
+
+    public synchronized int size()
+    {
+        return textures.size();
+    }
+
+    public synchronized int getTexelsHeld()
+    {
+        return texelsHeld;
+    }
+}
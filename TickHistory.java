@@ -0,0 +1,182 @@
+//==============================================================================
+//  Filename:       TickHistory.java
+//  Purpose:        Fixed size ring buffer of the last ticks of a game, for
+//                  rewinding and for reproducing bugs frame by frame.  Each
+//                  tick stores only the fields that changed since the tick
+//                  before it, together with a bit mask of which ones they
+//                  are; every KEY_INTERVAL ticks a full key frame is stored
+//                  as well.  Seeking to a tick starts from the key frame at
+//                  or before it and applies the deltas after it, so the cost
+//                  is the number of deltas in between.  All storage is in
+//                  primitive arrays allocated up front; recording allocates
+//                  nothing.  The methods are synchronized, so one thread can
+//                  record while another seeks.
+//==============================================================================
+
+public class TickHistory
+{
+    //--------------------------------------------------------------------------
+    //  Fields recorded each tick, used as indexes into the array filled by
+    //  seek().
+    //--------------------------------------------------------------------------
+    static final int        PLAYER_X = 0, PLAYER_Y = 1, STATUS = 2, TIMER = 3,
+                            LEVEL = 4, FIELDS = 5;
+
+    //--------------------------------------------------------------------------
+    //  Ticks between key frames.
+    //--------------------------------------------------------------------------
+    static final int        KEY_INTERVAL = 16;
+
+    private int             capacity;       //ticks that can be sought.
+    private int             slots;          //ticks actually stored.
+    private int             keySlots;       //key frames stored.
+    private byte            masks[];        //changed fields of each tick.
+    private int             deltas[];       //FIELDS values per tick slot.
+    private int             keys[];         //FIELDS values per key frame.
+    private int             last[];         //values of the newest tick.
+    private long            newest;         //number of the newest tick.
+
+    //--------------------------------------------------------------------------
+    //  TickHistory()
+    //
+    //  Takes the number of ticks that should stay reachable.  A few more are
+    //  kept internally, back to the key frame of the oldest one.
+    //
+    //--------------------------------------------------------------------------
+    public TickHistory(int capacity)
+    {
+        this.capacity = capacity;
+        slots = capacity + KEY_INTERVAL;
+        keySlots = capacity / KEY_INTERVAL + 2;
+        masks = new byte[slots];
+        deltas = new int[slots * FIELDS];
+        keys = new int[keySlots * FIELDS];
+        last = new int[FIELDS];
+        newest = -1;
+    }
+
+    //--------------------------------------------------------------------------
+    //  record()
+    //
+    //  Adds the next tick and returns its number.  Only the fields that differ
+    //  from the tick before are stored.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized long record(int playerX, int playerY, int status, int timer, int level)
+    {
+        long tick = ++newest;
+        int slot = (int)(tick % slots);
+        int base = slot * FIELDS;
+        int count = 0;
+        int mask = 0;
+
+        if(tick == 0 || playerX != last[PLAYER_X])
+        {
+            mask |= 1 << PLAYER_X;
+            deltas[base + count++] = last[PLAYER_X] = playerX;
+        }
+        if(tick == 0 || playerY != last[PLAYER_Y])
+        {
+            mask |= 1 << PLAYER_Y;
+            deltas[base + count++] = last[PLAYER_Y] = playerY;
+        }
+        if(tick == 0 || status != last[STATUS])
+        {
+            mask |= 1 << STATUS;
+            deltas[base + count++] = last[STATUS] = status;
+        }
+        if(tick == 0 || timer != last[TIMER])
+        {
+            mask |= 1 << TIMER;
+            deltas[base + count++] = last[TIMER] = timer;
+        }
+        if(tick == 0 || level != last[LEVEL])
+        {
+            mask |= 1 << LEVEL;
+            deltas[base + count++] = last[LEVEL] = level;
+        }
+        masks[slot] = (byte)mask;
+
+        if(tick % KEY_INTERVAL == 0)
+        {
+            System.arraycopy(last, 0, keys,
+                             (int)((tick / KEY_INTERVAL) % keySlots) * FIELDS,
+                             FIELDS);
+        }
+        return tick;
+    }
+
+    //--------------------------------------------------------------------------
+    //  seek()
+    //
+    //  Fills values with the fields as they were at the given tick.  Returns
+    //  false, leaving values alone, if the tick is not in the window.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized boolean seek(long tick, int values[])
+    {
+        if(tick < getOldest() || tick > newest)
+        {
+            return false;
+        }
+
+        long key = tick - tick % KEY_INTERVAL;
+        System.arraycopy(keys, (int)((key / KEY_INTERVAL) % keySlots) * FIELDS,
+                         values, 0, FIELDS);
+
+        for(long t = key + 1; t <= tick; t++)
+        {
+            int slot = (int)(t % slots);
+            int mask = masks[slot];
+            int index = slot * FIELDS;
+
+            for(int field = 0; mask != 0; field++, mask >>>= 1)
+            {
+                if((mask & 1) != 0)
+                {
+                    values[field] = deltas[index++];
+                }
+            }
+        }
+        return true;
+    }
+
+    //--------------------------------------------------------------------------
+    //  getOldest()
+    //
+    //  Number of the oldest tick that can still be sought, or 0 when nothing
+    //  has been recorded.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized long getOldest()
+    {
+        return Math.max(0, newest - capacity + 1);
+    }
+
+    //--------------------------------------------------------------------------
+    //  getNewest()
+    //
+    //  Number of the newest tick recorded, or -1 when nothing has been.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized long getNewest()
+    {
+        return newest;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    //--------------------------------------------------------------------------
+    //  clear()
+    //
+    //  Forgets every tick.  Tick numbers start again from 0.
+    //
+    //--------------------------------------------------------------------------
+    public synchronized void clear()
+    {
+        newest = -1;
+    }
+}
@@ -0,0 +1,151 @@
+package cannon;
+
+/*########################################################################
+ *
+ * Trajectory
+ *
+ *   The flight of one shell, pulled out of cannon.paint() so it can be
+ * stepped without drawing anything.  Units are the ones cannon uses:
+ * pixels, and pixels per step.  Each step the shell moves by (dx, dy)
+ * and then wind and gravity take half their value off the velocity.
+ *
+ ######################################################################*/
+
+public class Trajectory
+{
+  //##### Where the shell leaves the barrel
+  static final int MUZZLE_X = 65;
+  static final int MUZZLE_HEIGHT = 55;
+
+  //##### Degrees per radian, as cannon has always used it
+  public static final double RADS = 57.29577866f;
+
+  public double x, y, dx, dy;
+  double gravity, windage;
+  int xmax, ymax;
+  int steps;
+  Terrain terrain;
+  WindModel gusts;
+
+  //##### theta is in radians, the rest as cannon keeps them
+  public void launch(double theta, double velocity, double gravity,
+		     double windage, int xmax, int ymax)
+    {
+      this.gravity = gravity;
+      this.windage = windage;
+      this.xmax = xmax;
+      this.ymax = ymax;
+      x = MUZZLE_X;
+      y = ymax - MUZZLE_HEIGHT;
+      dx = velocity * Math.cos(theta);
+      dy = velocity * Math.sin(theta);
+      steps = 0;
+    }
+
+  //##### Launches from the CannonFrame scrollbar values
+  public void launchValues(int angle, int velocity, int gravity, int wind,
+			   int xmax, int ymax)
+    {
+      launch(angle(angle), velocity(velocity), gravity(gravity),
+	     windage(wind), xmax, ymax);
+    }
+
+  //##### Wind that changes every step instead of the steady windage,
+  //##### or null.  FixedTrajectory always uses the steady windage.
+  public void setWind(WindModel gusts)
+    {
+      this.gusts = gusts;
+    }
+
+  //##### Ground to land on instead of the flat line at ymax, or null
+  public void setTerrain(Terrain terrain)
+    {
+      this.terrain = terrain;
+    }
+
+  public boolean inFlight()
+    {
+      if (terrain != null)
+	return (x > 0) && (x < xmax) && !terrain.collides(x, y);
+      return (x > 0) && (x < xmax) && (y < ymax);
+    }
+
+  //##### True once the shell has come down on the ground in the field
+  public boolean landed()
+    {
+      return (x > 0) && (x < xmax) && !inFlight();
+    }
+
+  public void step()
+    {
+      if (gusts != null) windage = gusts.next();
+      x += dx;
+      dx -= windage/2;
+      y -= dy;
+      dy -= gravity/2;
+      steps++;
+    }
+
+  //##### True while the shell is inside the target
+  public boolean hitTarget()
+    {
+      return (x>(xmax-43)) && (x<(xmax-27)) &&
+	     (y>(ymax-40)) && (y<(ymax-25));
+    }
+
+  //##### Flies the shell until it hits the target or leaves the field.
+  //##### Returns true on a hit.
+  public boolean fly()
+    {
+      while (inFlight())
+	{
+	  step();
+	  if (hitTarget()) return true;
+	}
+      return false;
+    }
+
+  //##### As fly(), but gives up after maxSteps steps, leaving the shell
+  //##### in the air
+  public boolean fly(int maxSteps)
+    {
+      for (int i = 0; i < maxSteps && inFlight(); i++)
+	{
+	  step();
+	  if (hitTarget()) return true;
+	}
+      return false;
+    }
+
+  //##### Conversions from the CannonFrame scrollbar values
+  public static double angle(int val)
+    {
+      return (double)val / RADS;
+    }
+
+  public static double velocity(int val)
+    {
+      return (double)val / 5;
+    }
+
+  public static double gravity(int val)
+    {
+      return (double)val / 1000;
+    }
+
+  public static double windage(int val)
+    {
+      return (double)val / 200;
+    }
+
+  public int getSteps()
+    {
+      return steps;
+    }
+
+  //##### Ends the flight
+  public void stop()
+    {
+      x = 0;
+    }
+}
@@ -0,0 +1,171 @@
+//==============================================================================
+//  Filename:       VisibilityBenchmark.java
+//  Purpose:        Stand alone timing of the visibility work done per frame,
+//                  with and without the precomputed VisibilitySet, on large
+//                  generated mazes.
+//
+//  Usage:          java VisibilityBenchmark [maxSize] [frames]
+//==============================================================================
+
+import java.util.Random;
+
+public class VisibilityBenchmark
+{
+    public static void main(String args[])
+    {
+        int maxSize = (args.length > 0) ? Integer.parseInt(args[0]) : 256;
+        int frames = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+
+        System.out.println("size      build ms   frame ns (rays)   frame ns (pvs)   KB");
+
+        for(int size = 16; size <= maxSize; size *= 2)
+        {
+            int cells[][] = generateMaze(size, 1234L + size);
+
+            long buildStart = System.nanoTime();
+            VisibilitySet pvs = new VisibilitySet(cells);
+            long buildTime = System.nanoTime() - buildStart;
+
+            //------------------------------------------------------------------
+            //  Warm up both paths before timing them.
+            //------------------------------------------------------------------
+            walk(cells, pvs, frames, false);
+            walk(cells, pvs, frames, true);
+
+            long start = System.nanoTime();
+            int raySeen = walk(cells, pvs, frames, false);
+            long rayTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int pvsSeen = walk(cells, pvs, frames, true);
+            long pvsTime = System.nanoTime() - start;
+
+            if(raySeen != pvsSeen)
+            {
+                throw new IllegalStateException("PVS disagrees with ray casts: " +
+                                                raySeen + " != " + pvsSeen);
+            }
+
+            long bytes = (long)size * size * VisibilitySet.WORDS * 8;
+            System.out.println(pad(size + "x" + size, 10) +
+                               pad(String.valueOf(buildTime / 1000000), 11) +
+                               pad(String.valueOf(rayTime / frames), 18) +
+                               pad(String.valueOf(pvsTime / frames), 17) +
+                               (bytes / 1024));
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  walk()
+    //
+    //  Simulates a frame per step of a random walk through the open cells,
+    //  gathering the cells in view either by ray casting or from the PVS.
+    //  Returns the total count so the work cannot be optimised away.
+    //
+    //--------------------------------------------------------------------------
+    private static int walk(int cells[][], VisibilitySet pvs, int frames,
+                            boolean usePvs)
+    {
+        Random random = new Random(42);
+        int size = cells.length;
+        int px = 1, py = 1;
+        int seen = 0;
+
+        for(int frame = 0; frame < frames; frame++)
+        {
+            int nx = px + random.nextInt(3) - 1;
+            int ny = py + random.nextInt(3) - 1;
+            if(cells[ny][nx] == VisibilitySet.OPEN)
+            {
+                px = nx;
+                py = ny;
+            }
+
+            int r = VisibilitySet.RADIUS;
+            for(int y = Math.max(0, py - r); y <= Math.min(size - 1, py + r); y++)
+            {
+                for(int x = Math.max(0, px - r); x <= Math.min(size - 1, px + r); x++)
+                {
+                    boolean visible = usePvs
+                        ? pvs.isVisible(px, py, x, y)
+                        : VisibilitySet.lineOfSight(cells, px, py, x, y);
+                    if(visible)
+                    {
+                        seen++;
+                    }
+                }
+            }
+        }
+        return seen;
+    }
+
+    //--------------------------------------------------------------------------
+    //  generateMaze()
+    //
+    //  Carves a perfect maze with a randomised depth first search.  Walls are
+    //  1, open cells are VisibilitySet.OPEN.
+    //
+    //--------------------------------------------------------------------------
+    static int[][] generateMaze(int size, long seed)
+    {
+        Random random = new Random(seed);
+        int cells[][] = new int[size][size];
+        int stack[] = new int[size * size];
+        int top = 0;
+
+        for(int y = 0; y < size; y++)
+        {
+            for(int x = 0; x < size; x++)
+            {
+                cells[y][x] = 1;
+            }
+        }
+
+        cells[1][1] = VisibilitySet.OPEN;
+        stack[top++] = size + 1;
+
+        int dirX[] = { 2, -2, 0, 0 };
+        int dirY[] = { 0, 0, 2, -2 };
+
+        while(top > 0)
+        {
+            int cell = stack[top - 1];
+            int cx = cell % size;
+            int cy = cell / size;
+            int start = random.nextInt(4);
+            boolean carved = false;
+
+            for(int i = 0; i < 4 && !carved; i++)
+            {
+                int d = (start + i) & 3;
+                int nx = cx + dirX[d];
+                int ny = cy + dirY[d];
+
+                if(nx > 0 && ny > 0 && nx < size - 1 && ny < size - 1 &&
+                   cells[ny][nx] != VisibilitySet.OPEN)
+                {
+                    cells[cy + dirY[d] / 2][cx + dirX[d] / 2] = VisibilitySet.OPEN;
+                    cells[ny][nx] = VisibilitySet.OPEN;
+                    stack[top++] = ny * size + nx;
+                    carved = true;
+                }
+            }
+
+            if(!carved)
+            {
+                top--;
+            }
+        }
+        return cells;
+    }
+
+    private static String pad(String s, int width)
+    {
+        StringBuffer buffer = new StringBuffer(s);
+        while(buffer.length() < width)
+        {
+            buffer.append(' ');
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,207 @@
+//==============================================================================
+//  Filename:       VisibilitySet.java
+//  Purpose:        Precomputed potentially visible set (PVS) for a maze level.
+//                  For every open cell of the maze a compact bitset is built
+//                  that records which cells inside a square window around it
+//                  can be seen from it.  The set is built once when a level is
+//                  loaded, so the renderer, the minimap fog of war and monster
+//                  wake-up only have to test a bit instead of casting rays
+//                  every frame.
+//
+//  Notes:          Cells are addressed as cells[y][x], the same way the map
+//                  reports the player position.  Any cell that is not OPEN
+//                  blocks the line of sight, but is itself visible (it is the
+//                  wall face that gets drawn).
+//==============================================================================
+
+public class VisibilitySet
+{
+    //--------------------------------------------------------------------------
+    //  Value of a cell that does not block sight.
+    //--------------------------------------------------------------------------
+    static final int        OPEN = 0;
+
+    //--------------------------------------------------------------------------
+    //  How many cells away from the viewer are considered.  The window is
+    //  (2 * RADIUS + 1) cells wide, which is well past the depth the view
+    //  port shades to black.
+    //--------------------------------------------------------------------------
+    static final int        RADIUS = 7;
+    static final int        SPAN = 2 * RADIUS + 1;
+    static final int        WORDS = (SPAN * SPAN + 63) / 64;
+
+    private int             width, height;      //size of the maze in cells.
+    private long            bits[];             //WORDS longs per cell.
+
+    //--------------------------------------------------------------------------
+    //  VisibilitySet()
+    //
+    //  Builds the set for the given maze.
+    //
+    //--------------------------------------------------------------------------
+    public VisibilitySet(int cells[][])
+    {
+        height = cells.length;
+        width = (height > 0) ? cells[0].length : 0;
+        bits = new long[width * height * WORDS];
+
+        for(int y = 0; y < height; y++)
+        {
+            for(int x = 0; x < width; x++)
+            {
+                //--------------------------------------------------------------
+                //  Nothing is visible from inside a wall.
+                //--------------------------------------------------------------
+                if(cells[y][x] != OPEN)
+                {
+                    continue;
+                }
+                buildCell(cells, x, y);
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  buildCell()
+    //
+    //  Fills in the bits for the window around one cell.
+    //
+    //--------------------------------------------------------------------------
+    private void buildCell(int cells[][], int fromX, int fromY)
+    {
+        int base = (fromY * width + fromX) * WORDS;
+
+        for(int dy = -RADIUS; dy <= RADIUS; dy++)
+        {
+            for(int dx = -RADIUS; dx <= RADIUS; dx++)
+            {
+                int toX = fromX + dx;
+                int toY = fromY + dy;
+
+                if(toX < 0 || toY < 0 || toX >= width || toY >= height)
+                {
+                    continue;
+                }
+                if(lineOfSight(cells, fromX, fromY, toX, toY))
+                {
+                    int bit = (dy + RADIUS) * SPAN + (dx + RADIUS);
+                    bits[base + (bit >>> 6)] |= 1L << (bit & 63);
+                }
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  isVisible()
+    //
+    //  Returns true if the cell (toX, toY) can be seen from (fromX, fromY).
+    //  Cells outside the window or outside the maze are never visible.
+    //
+    //--------------------------------------------------------------------------
+    public boolean isVisible(int fromX, int fromY, int toX, int toY)
+    {
+        int dx = toX - fromX;
+        int dy = toY - fromY;
+
+        if(fromX < 0 || fromY < 0 || fromX >= width || fromY >= height ||
+           dx < -RADIUS || dx > RADIUS || dy < -RADIUS || dy > RADIUS)
+        {
+            return false;
+        }
+
+        int bit = (dy + RADIUS) * SPAN + (dx + RADIUS);
+        return (bits[(fromY * width + fromX) * WORDS + (bit >>> 6)]
+                & (1L << (bit & 63))) != 0;
+    }
+
+    //--------------------------------------------------------------------------
+    //  countVisible()
+    //
+    //  Returns the number of cells visible from the given cell.
+    //
+    //--------------------------------------------------------------------------
+    public int countVisible(int fromX, int fromY)
+    {
+        if(fromX < 0 || fromY < 0 || fromX >= width || fromY >= height)
+        {
+            return 0;
+        }
+
+        int count = 0;
+        int base = (fromY * width + fromX) * WORDS;
+
+        for(int i = 0; i < WORDS; i++)
+        {
+            count += Long.bitCount(bits[base + i]);
+        }
+        return count;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    //--------------------------------------------------------------------------
+    //  lineOfSight()
+    //
+    //  Walks the cells crossed by the segment between the two cell centres
+    //  and returns false as soon as a blocking cell is found between them.
+    //  The end cells themselves are never tested.  Corners where the segment
+    //  passes exactly between two cells are treated as blocked if either
+    //  side is a wall, so sight does not leak through diagonal gaps.
+    //
+    //--------------------------------------------------------------------------
+    static boolean lineOfSight(int cells[][], int x0, int y0, int x1, int y1)
+    {
+        int dx = Math.abs(x1 - x0);
+        int dy = Math.abs(y1 - y0);
+        int stepX = (x1 > x0) ? 1 : -1;
+        int stepY = (y1 > y0) ? 1 : -1;
+        int x = x0;
+        int y = y0;
+        int error = dx - dy;
+
+        dx *= 2;
+        dy *= 2;
+
+        for(int n = (dx + dy) / 2; n > 1; n--)
+        {
+            if(error > 0)
+            {
+                x += stepX;
+                error -= dy;
+            }
+            else if(error < 0)
+            {
+                y += stepY;
+                error += dx;
+            }
+            else
+            {
+                //--------------------------------------------------------------
+                //  Passing exactly through a corner.
+                //--------------------------------------------------------------
+                if(cells[y][x + stepX] != OPEN || cells[y + stepY][x] != OPEN)
+                {
+                    return false;
+                }
+                x += stepX;
+                y += stepY;
+                error += dx - dy;
+                n--;
+            }
+
+            if((x != x1 || y != y1) && cells[y][x] != OPEN)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
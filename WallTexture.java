@@ -0,0 +1,245 @@
+//==============================================================================
+//  Filename:       WallTexture.java
+//  Purpose:        A wall texture held as plain int[] texel arrays, one per
+//                  mip level.  Each level is half the size of the one before
+//                  it and is built once, when the texture is loaded, with a
+//                  2x2 box filter.  Wall columns pick the level that matches
+//                  their projected height, so distant walls sample a small
+//                  array instead of skipping through the full size one.
+//==============================================================================
+
+import java.awt.Image;
+import java.awt.image.PixelGrabber;
+
+public class WallTexture
+{
+    private String          name;           //name the texture was loaded as.
+    private int             widths[];       //width of each mip level.
+    private int             heights[];      //height of each mip level.
+    private int             texels[][];     //ARGB texels, one array per level.
+    private int             texelCount;     //texels held across all levels.
+
+    //--------------------------------------------------------------------------
+    //  WallTexture()
+    //
+    //  Builds the mip chain from the full size texels of level 0.
+    //
+    //--------------------------------------------------------------------------
+    public WallTexture(String name, int pixels[], int width, int height)
+    {
+        this.name = name;
+
+        int levels = 1;
+        for(int size = Math.max(width, height); size > 1; size >>= 1)
+        {
+            levels++;
+        }
+
+        widths = new int[levels];
+        heights = new int[levels];
+        texels = new int[levels][];
+
+        widths[0] = width;
+        heights[0] = height;
+        texels[0] = pixels;
+        texelCount = pixels.length;
+
+        for(int level = 1; level < levels; level++)
+        {
+            buildLevel(level);
+            texelCount += texels[level].length;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  buildLevel()
+    //
+    //  Averages 2x2 blocks of the previous level, channel by channel.
+    //
+    //--------------------------------------------------------------------------
+    private void buildLevel(int level)
+    {
+        int srcWidth = widths[level - 1];
+        int srcHeight = heights[level - 1];
+        int src[] = texels[level - 1];
+        int width = Math.max(1, srcWidth >> 1);
+        int height = Math.max(1, srcHeight >> 1);
+        int dst[] = new int[width * height];
+
+        for(int y = 0; y < height; y++)
+        {
+            int y0 = Math.min(2 * y, srcHeight - 1) * srcWidth;
+            int y1 = Math.min(2 * y + 1, srcHeight - 1) * srcWidth;
+
+            for(int x = 0; x < width; x++)
+            {
+                int x0 = Math.min(2 * x, srcWidth - 1);
+                int x1 = Math.min(2 * x + 1, srcWidth - 1);
+
+                dst[y * width + x] = average(src[y0 + x0], src[y0 + x1],
+                                             src[y1 + x0], src[y1 + x1]);
+            }
+        }
+
+        widths[level] = width;
+        heights[level] = height;
+        texels[level] = dst;
+    }
+
+    private static int average(int a, int b, int c, int d)
+    {
+        int alpha = (((a >>> 24) + (b >>> 24) + (c >>> 24) + (d >>> 24)) >> 2);
+        int red = ((((a >> 16) & 0xff) + ((b >> 16) & 0xff) +
+                    ((c >> 16) & 0xff) + ((d >> 16) & 0xff)) >> 2);
+        int green = ((((a >> 8) & 0xff) + ((b >> 8) & 0xff) +
+                      ((c >> 8) & 0xff) + ((d >> 8) & 0xff)) >> 2);
+        int blue = (((a & 0xff) + (b & 0xff) + (c & 0xff) + (d & 0xff)) >> 2);
+
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+
+    //--------------------------------------------------------------------------
+    //  mipFor()
+    //
+    //  Returns the smallest mip level that is still at least as tall as the
+    //  projected height of the wall column, so every screen pixel maps to at
+    //  most one texel step.
+    //
+    //--------------------------------------------------------------------------
+    public int mipFor(int projectedHeight)
+    {
+        int level = 0;
+
+        while(level < heights.length - 1 && (heights[level] >> 1) >= projectedHeight)
+        {
+            level++;
+        }
+        return level;
+    }
+
+    //--------------------------------------------------------------------------
+    //  drawColumn()
+    //
+    //  Draws one vertical wall slice into an int raster of the given scan
+    //  width.  u is the horizontal texture coordinate in [0, 1), top is the
+    //  screen row of the top of the wall (it may be above the raster) and
+    //  shade scales the colour, 256 being full brightness.  Only rows between
+    //  clipTop (inclusive) and clipBottom (exclusive) are written.
+    //
+    //--------------------------------------------------------------------------
+    public void drawColumn(int raster[], int scanWidth, int x, int top,
+                           int projectedHeight, float u, int shade,
+                           int clipTop, int clipBottom)
+    {
+        if(projectedHeight <= 0)
+        {
+            return;
+        }
+
+        int level = mipFor(projectedHeight);
+        int texWidth = widths[level];
+        int texHeight = heights[level];
+        int src[] = texels[level];
+
+        int column = (int)(u * texWidth);
+        if(column < 0)
+        {
+            column = 0;
+        }
+        else if(column >= texWidth)
+        {
+            column = texWidth - 1;
+        }
+
+        //----------------------------------------------------------------------
+        //  Step through the texture in 16.16 fixed point.
+        //----------------------------------------------------------------------
+        int step = (texHeight << 16) / projectedHeight;
+        int start = Math.max(top, clipTop);
+        int end = Math.min(top + projectedHeight, clipBottom);
+        int v = (start - top) * step;
+        int offset = start * scanWidth + x;
+
+        for(int row = start; row < end; row++)
+        {
+            int texel = src[(v >> 16) * texWidth + column];
+
+            if(shade < 256)
+            {
+                int red = (((texel >> 16) & 0xff) * shade) >> 8;
+                int green = (((texel >> 8) & 0xff) * shade) >> 8;
+                int blue = ((texel & 0xff) * shade) >> 8;
+                texel = (texel & 0xff000000) | (red << 16) | (green << 8) | blue;
+            }
+
+            raster[offset] = texel;
+            offset += scanWidth;
+            v += step;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  grab()
+    //
+    //  Pulls the pixels out of a loaded AWT image.  Returns null if the image
+    //  could not be read.
+    //
+    //--------------------------------------------------------------------------
+    public static WallTexture grab(String name, Image image)
+    {
+        PixelGrabber grabber = new PixelGrabber(image, 0, 0, -1, -1, true);
+
+        try
+        {
+            if(!grabber.grabPixels())
+            {
+                return null;
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        int width = grabber.getWidth();
+        int height = grabber.getHeight();
+        if(width <= 0 || height <= 0)
+        {
+            return null;
+        }
+        return new WallTexture(name, (int[])grabber.getPixels(), width, height);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getLevels()
+    {
+        return texels.length;
+    }
+
+    public int getWidth(int level)
+    {
+        return widths[level];
+    }
+
+    public int getHeight(int level)
+    {
+        return heights[level];
+    }
+
+    //--------------------------------------------------------------------------
+    //  getTexelCount()
+    //
+    //  Number of texels held by the whole mip chain, used by the cache to
+    //  keep its memory bounded.
+    //
+    //--------------------------------------------------------------------------
+    public int getTexelCount()
+    {
+        return texelCount;
+    }
+}
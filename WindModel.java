@@ -0,0 +1,53 @@
+package cannon;
+
+/*########################################################################
+ *
+ * WindModel
+ *
+ *   Gusting wind for Trajectory.  Each step the wind is the steady
+ * windage plus a gust that drifts a little from the step before, so
+ * gusts build and die away over a few dozen steps instead of jumping
+ * about.  spread is the standard deviation of the gust.
+ *
+ *   All the randomness comes from the SplittableRandom it is given, so
+ * a flight can be flown again from the same seed, and models on
+ * different threads never share anything.
+ *
+ ######################################################################*/
+
+import java.util.SplittableRandom;
+
+public class WindModel
+{
+  //##### Share of the gust kept from one step to the next
+  static final double DRIFT = 0.97;
+  static final double KICK = Math.sqrt(1 - DRIFT * DRIFT);
+
+  //##### Standard deviation of uniform noise in [-1, 1)
+  static final double UNIFORM = 1 / Math.sqrt(3);
+
+  double steady, spread, gust;
+  SplittableRandom random;
+
+  //##### steady and spread in cannon's windage units
+  public WindModel(double steady, double spread, SplittableRandom random)
+    {
+      this.steady = steady;
+      this.spread = spread;
+      this.random = random;
+      gust = spread * noise();
+    }
+
+  //##### Wind for the next step
+  public double next()
+    {
+      gust = gust * DRIFT + spread * KICK * noise();
+      return steady + gust;
+    }
+
+  //##### Noise with a standard deviation of one
+  double noise()
+    {
+      return (random.nextDouble() * 2 - 1) / UNIFORM;
+    }
+}
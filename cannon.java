@@ -43,22 +43,80 @@ package cannon;
  ######################################################################*/
 
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.net.*;
 import java.lang.Math;
 import java.lang.Integer;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import javax.swing.Timer;
+import perf.FrameProfiler;
 
 public class cannon extends java.applet.Applet
+  implements DuelClient.Listener, HitEstimator.Listener, ParticleSystem.Backdrop
 {
-  double dx, dy, theta, velocity, gravity, windage;
+  double theta, velocity, gravity, windage;
   int xmax, ymax, numshots;
   Color black, erase;
-  double x, y;
+  //##### ballistics=fixed flies shells in FixedTrajectory instead,
+  //##### which gives the same flight on every JVM
+  Trajectory shell = new Trajectory();
+  ParticleSystem particles = new ParticleSystem(1024);
+  //##### Plays out the smoke and debris left when a flight ends.  It
+  //##### fires on the AWT thread, like paint(), so the two never race.
+  Timer settle;
+  static final int PARTICLE_MILLIS = 5;
+  Terrain ground;
+  //##### The field is xmax wide, FIELD unless the field parameter says
+  //##### otherwise, and the window shows VIEW columns of it from
+  //##### cameraX.  Flights scroll it to keep the shell in view.
+  static final int VIEW = 600, FIELD = 1200;
+  int cameraX;
+  //##### Set once a flight has knocked the target over this paint
+  boolean targetDown;
+  static final int CRATER = 10;
+
+  //##### Scrollbar values behind theta, velocity, gravity and windage,
+  //##### which is what a duel sends
+  int angleVal = 60, velocityVal = 15, gravityVal = 98, windVal = 0;
+  DuelClient duel;
+  static final int DUEL_PORT = 4722;
+
+  //##### A duel flies every shot in fixed point, so both ends see the
+  //##### same flight: ours in duelShell, whatever ballistics says, and
+  //##### the opponent's last one in opponentShell from the settings
+  //##### they sent.  Neither touches our own aim.
+  FixedTrajectory duelShell = new FixedTrajectory();
+  FixedTrajectory opponentShell = new FixedTrajectory();
+  int opponentAngle, opponentVelocity, opponentGravity, opponentWind;
+  boolean opponentFired, opponentNew;
+
+  //##### Where the last flight hit or left the field
+  double endX, endY;
+
+  //##### Every shot fired, if the shotlog parameter names a file
+  ShotLog shotLog;
+
+  //##### gusts=n makes the wind gust by n (in wind scrollbar units) around
+  //##### the scrollbar setting.  A shot's gusts come from shotSeed, so a
+  //##### repaint flies it through the same ones.  Only Trajectory gusts:
+  //##### FixedTrajectory flies in a steady wind, so duels and
+  //##### ballistics=fixed have no gusts.
+  double gustSpread;
+  long shotSeed;
+  HitEstimator estimator = new HitEstimator();
+  static final int SAMPLES = 4000;
   double xo[] = new double[4];
   double yo[] = new double[4];
   double rads;
   boolean dosound;
   CannonFrame frame;
 
+  //##### Timed phases of paint()
+  static final int TRAJECTORY = 0, HIT_FX = 1;
+  FrameProfiler profiler;
+
   Graphics drawarea;
 
   Image can, shot, targ, targ2,
@@ -75,6 +133,12 @@ public class cannon extends java.applet.Applet
       if (numshots > 0)
 	{
 	  numshots--;
+	  shotSeed = System.nanoTime();
+	  if (isDueling())
+	    {
+	      try { duel.shoot(angleVal, velocityVal, gravityVal, windVal); }
+	      catch (IOException e) { showStatus("Duel: " + e.getMessage()); }
+	    }
 	  play(getCodeBase(), "sounds/cannon.au");
 	  dosound = true;
 	  repaint();
@@ -98,10 +162,27 @@ public class cannon extends java.applet.Applet
     {
       loadImages();
       numshots = 4;
-      rads = 57.29577866f;
-      xmax = 600;
+      rads = Trajectory.RADS;
+      String field = getParameter("field");
+      xmax = (field != null) ? Math.max(VIEW, Integer.parseInt(field)) : FIELD;
       ymax = 300;
-      resize(xmax,ymax+20);
+      resize(VIEW,ymax+20);
+      ground = new Terrain(xmax, ymax, ymax+20);
+      if ("fixed".equals(getParameter("ballistics")))
+	shell = new FixedTrajectory();
+      shell.setTerrain(ground);
+      duelShell.setTerrain(ground);
+      opponentShell.setTerrain(ground);
+      particles.setBackdrop(this);
+      String logName = getParameter("shotlog");
+      if (logName != null)
+	{
+	  try { shotLog = new ShotLog(new java.io.File(logName)); }
+	  catch (IOException e) { showStatus("Shot log: " + e.getMessage()); }
+	}
+      String gusts = getParameter("gusts");
+      if (gusts != null)
+	gustSpread = Double.parseDouble(gusts) * Trajectory.windage(1);
       theta = 60;		// degrees
       theta /= rads;		// -> radians
       velocity = 3;		// m/s x 10^-1
@@ -110,35 +191,68 @@ public class cannon extends java.applet.Applet
       black = Color.black;
       erase = Color.blue;
       frame = new CannonFrame(this);
+      settle = new Timer(PARTICLE_MILLIS, new ActionListener() {
+	public void actionPerformed(ActionEvent e) {
+	  settleParticles();
+	}
+      });
+      estimateHit();
+      profiler = new FrameProfiler("cannon", new String[] {"trajectory", "hitFx"});
     }
   
   public void changeAngle(int val)
     {
       Integer temp = new Integer(val);
-      theta = (double)val;		// degrees
-      theta /= rads;		// -> radians
+      angleVal = val;
+      theta = Trajectory.angle(val);	// -> radians
       frame.ang.setText(temp.toString());
+      estimateHit();
     }
 
   public void changeVelocity(int val)
     {
       Integer temp = new Integer(val);
-      velocity = (double)val / 5;
+      velocityVal = val;
+      velocity = Trajectory.velocity(val);
       frame.vel.setText(temp.toString());
+      estimateHit();
     }
 
   public void changeGravity(int val)
     {
       Float temp = new Float((float)val / 10);
-      gravity = (double)val / 1000;
+      gravityVal = val;
+      gravity = Trajectory.gravity(val);
       frame.grav.setText(temp.toString());
+      estimateHit();
     }
 
   public void changeWindage(int val)
     {
       Integer temp = new Integer(val);
-      windage = (double)val / 200;
+      windVal = val;
+      windage = Trajectory.windage(val);
       frame.wind.setText(temp.toString());
+      estimateHit();
+    }
+
+  //##### Starts working out the hit probability of the current aim
+  public void estimateHit()
+    {
+      estimator.request(angleVal, velocityVal, gravityVal, windVal, gustSpread,
+			SAMPLES, xmax, ymax,
+			isDueling() || shell instanceof FixedTrajectory, ground, this);
+    }
+
+  //##### HitEstimator.Listener; called on the estimator's thread
+  public void estimated(final double probability)
+    {
+      EventQueue.invokeLater(new Runnable() {
+	public void run() {
+	  if (frame != null)
+	    frame.odds.setText("Hit: " + Math.round(probability * 100) + "%");
+	}
+      });
     }
 
   public void paint(Graphics g)
@@ -150,109 +264,226 @@ public class cannon extends java.applet.Applet
       drawarea = g;
       //##### Cannon part
 
-      //##### Draw images
+      //##### Draw ground and images, from the cannon's end
+      cameraX = 0;
+      ground.drawAll(g, cameraX, VIEW);
+      targetDown = false;
+      drawScenery(g);
+
+      if (numshots < 4)
+	{
+	  //##### Shoot da shot.  In a duel it flies in fixed point, as it
+	  //##### does on the other end.
+	  Trajectory s = isDueling() ? duelShell : shell;
+	  s.setWind((gustSpread > 0 && !(s instanceof FixedTrajectory))
+		    ? new WindModel(windage, gustSpread, new SplittableRandom(shotSeed))
+		    : null);
+	  s.launchValues(angleVal, velocityVal, gravityVal, windVal, xmax, ymax);
+	  boolean animate = dosound;
+	  dosound = false;
+	  boolean hit = flyShell(g, s, animate);
+	  if (animate && shotLog != null)
+	    shotLog.record(angleVal, velocityVal, gravityVal, windVal, hit,
+			   s instanceof FixedTrajectory, endX, endY, s.getSteps());
+	}
+
+      //##### The opponent's last shot, from their settings, whether or
+      //##### not we have fired yet
+      if (opponentFired)
+	{
+	  opponentShell.launchValues(opponentAngle, opponentVelocity,
+				     opponentGravity, opponentWind, xmax, ymax);
+	  boolean animate = opponentNew;
+	  opponentNew = false;
+	  flyShell(g, opponentShell, animate);
+	}
+
+      //##### Let the smoke and debris play out after paint returns
+      if (!particles.isEmpty()) settle.start();
+    }
+
+  //##### The cannon, the shots left and the target, the target knocked
+  //##### over (targ2) once a flight has hit it
+  void drawScenery(Graphics g)
+    {
       g.drawImage(can, 20, ymax - can.getHeight(this), this);
-      g.drawImage(targ, xmax - (targ.getWidth(this) + 10), ymax - targ.getHeight(this), this);
+      if (targetDown)
+	g.drawImage(targ2, xmax - (targ.getWidth(this) + 10), ymax - targ2.getHeight(this), this);
+      else
+	g.drawImage(targ, xmax - (targ.getWidth(this) + 10), ymax - targ.getHeight(this), this);
       if (numshots > 3) g.drawImage(shot, 0, ymax - ((2*shot.getHeight(this))+2), this);
       if (numshots > 2) g.drawImage(shot, 2 + shot.getWidth(this), 
 				    ymax - ((2*shot.getHeight(this))+2), this);
       if (numshots > 1) g.drawImage(shot, 0, ymax - shot.getHeight(this), this);
       if (numshots  >0) g.drawImage(shot, 2 + shot.getWidth(this), ymax - shot.getHeight(this), this);
+    }
 
-      if (numshots < 4)
+  //##### ParticleSystem.Backdrop: the ground and the scenery under a
+  //##### particle's last spot, drawn clipped to it
+  public void restore(Graphics g, int x, int y, int width, int height)
+    {
+      Shape clip = g.getClip();
+      g.clipRect(x, y, width, height);
+      g.clearRect(x, y, width, height);
+      ground.drawColumns(g, x, x + width - 1);
+      //##### The images are all on the ground line, at either end
+      int top = ymax - Math.max(Math.max(can.getHeight(this), targ.getHeight(this)),
+				Math.max(targ2.getHeight(this), 2*shot.getHeight(this) + 2));
+      if (y + height > top
+	  && (x < 20 + can.getWidth(this) || x + width > xmax - (targ.getWidth(this) + 10)))
+	drawScenery(g);
+      g.setClip(clip);
+    }
+
+  //##### Flies s across the field, drawing it as it goes, and returns
+  //##### true on a hit; endX and endY are where it hit or left the
+  //##### field.  Only a new shot (animate) is slowed down to be seen,
+  //##### gets the hit FX and digs a crater; repaints only redraw the
+  //##### path, so they must not dig again.
+  boolean flyShell(Graphics g, Trajectory s, boolean animate)
+    {
+      boolean hit = false;
+      long flight = profiler.begin();
+      long fxTime = 0;
+
+      while (s.inFlight())
 	{
-	  //##### Shoot da shot
-	  x = 65;
-	  y = ymax-55;
-	  dx = velocity * Math.cos(theta);
-	  dy = velocity * Math.sin(theta);
-	  g.setColor(Color.gray);
-	  
-	  while ((x > 0) && (x < xmax) && (y < ymax))
+	  double x = s.x, y = s.y;
+	  follow(g, x);
+	  if (xo[3] != 0)
+	    g.clearRect((int)xo[3] - 4, (int)yo[3] - 4, 8, 7);
+	  //##### Smoke puffs off a few steps behind the shell
+	  if (xo[0] != 0)
+	    particles.burst(ParticleSystem.SMOKE, xo[0], yo[0], 1, .15);
+	  particles.update(s.gravity, s.windage);
+	  particles.draw(g);
+	  g.drawImage(shot, (int)x - 4, (int)y - 4, this);
+	  if (x < 75) g.drawImage(can, 20, ymax - can.getHeight(this), this);
+	  if ((x>xmax-(targ.getWidth(this)+10)) && (y>ymax-targ.getHeight(this)))
+	    g.drawImage(targ, xmax - (targ.getWidth(this)+10), 
+			ymax - targ.getHeight(this), this);
+	  if (animate)try {Thread.sleep(5);} catch (InterruptedException e){}
+	  xo[0] = xo[1]; xo[1] = xo[2]; xo[2] = xo[3];
+	  yo[0] = yo[1]; yo[1] = yo[2]; yo[2] = yo[3];
+	  xo[3] = x; yo[3] = y;
+	  s.step();
+
+	  //##### Check for hit
+	  if (s.hitTarget())
 	    {
-	      if (xo[3] != 0)
-		g.clearRect((int)xo[3] - 4, (int)yo[3] - 4, 8, 7);
-	      if (xo[0] != 0)
-		  g.drawRect((int)xo[0]-1, (int)yo[0]-1, 2, 2);
-	      g.drawImage(shot, (int)x - 4, (int)y - 4, this);
-	      if (x < 75) g.drawImage(can, 20, ymax - can.getHeight(this), this);
-	      if ((x>xmax-(targ.getWidth(this)+10)) && (y>ymax-targ.getHeight(this)))
-		g.drawImage(targ, xmax - (targ.getWidth(this)+10), 
-			    ymax - targ.getHeight(this), this);
-	      if (dosound)try {Thread.sleep(5);} catch (InterruptedException e){}
-	      xo[0] = xo[1]; xo[1] = xo[2]; xo[2] = xo[3];
-	      yo[0] = yo[1]; yo[1] = yo[2]; yo[2] = yo[3];
-	      xo[3] = x; yo[3] = y;
-	      x += dx;
-	      dx -= windage/2;
-	      y -= dy;
-	      dy -= gravity/2;
-	      
-	      //##### Check for hit
-	      if ((x>(xmax-43)) && (x<(xmax-27)) && 
-		  (y>(ymax-40)) && (y<(ymax-25)))
+	      if (animate)
 		{
-		  if (dosound)
-		    {
-		      play(getCodeBase(), "sounds/explosion.au");
-		      //##### Draw FX
-		      // Bang over full target
-		      g.drawImage(bang1, xmax - (targ.getWidth(this)+10), 
-				  ymax - targ.getHeight(this), this);
-		      
-		      // puff1 over targ2
-		try {Thread.sleep(75);} catch (InterruptedException e){}
-		      g.clearRect(xmax-(targ.getWidth(this)+10), ymax-targ2.getHeight(this),
-				  (targ.getWidth(this)+10), targ2.getHeight(this));
-		      g.drawImage(targ2, xmax - (targ.getWidth(this)+10), 
-				  ymax - targ2.getHeight(this), this);
-		      play(getCodeBase(), "sounds/applause.au");
-		      g.drawImage(puff1, xmax - (targ.getWidth(this)+15), 
-				  ymax - (targ.getHeight(this)+40), this);
-		      
-		      // Puff2 over targ2
-		try {Thread.sleep(75);} catch (InterruptedException e){}
-		      g.clearRect(xmax-(targ.getWidth(this)+15), 
-				  ymax-(targ.getHeight(this)+40),
-				  (targ.getWidth(this)+15), (targ.getHeight(this)+40));
-		      g.drawImage(targ2, xmax - (targ.getWidth(this)+10), 
-				  ymax - targ2.getHeight(this), this);
-		      g.drawImage(puff2, xmax - (targ.getWidth(this)+15), 
-				  ymax - (targ.getHeight(this)+40), this);
-		      
-		      // puff3 over targ2
-		try {Thread.sleep(75);} catch (InterruptedException e){}
-		      g.clearRect(xmax-(targ.getWidth(this)+15), 
-				  ymax-(targ.getHeight(this)+40),
-				  (targ.getWidth(this)+15), (targ.getHeight(this)+40));
-		      g.drawImage(targ2, xmax - (targ.getWidth(this)+10), 
-				  ymax - targ2.getHeight(this), this);	
-		      g.drawImage(puff3, xmax - (targ.getWidth(this)+10), 
-				  ymax - (targ.getHeight(this)+40), this);
-		      
-		      // puff4 over targ2
-		try {Thread.sleep(75);} catch (InterruptedException e){}
-		      g.clearRect(xmax-(targ.getWidth(this)+15), 
-				  ymax-(targ.getHeight(this)+40),
-				  (targ.getWidth(this)+15), (targ.getHeight(this)+40));
-		      g.drawImage(targ2, xmax - (targ.getWidth(this)+10), 
-				  ymax - targ2.getHeight(this), this);
-		      g.drawImage(puff4, xmax - (targ.getWidth(this)+10), 
-				  ymax - (targ.getHeight(this)+40), this);
-		      dosound = false;
-		      
-		try {Thread.sleep(75);} catch (InterruptedException e){}
-		    }
-		  // targ2
-		  g.clearRect(xmax-(targ.getWidth(this)+15), ymax-(targ.getHeight(this)+40),
+		  long fx = profiler.begin();
+		  play(getCodeBase(), "sounds/explosion.au");
+		  particles.burst(ParticleSystem.DEBRIS, s.x, s.y, 40, 2);
+		  //##### Draw FX
+		  // Bang over full target
+		  g.drawImage(bang1, xmax - (targ.getWidth(this)+10), 
+			      ymax - targ.getHeight(this), this);
+
+		  // puff1 over targ2
+	    try {Thread.sleep(75);} catch (InterruptedException e){}
+		  g.clearRect(xmax-(targ.getWidth(this)+10), ymax-targ2.getHeight(this),
+			      (targ.getWidth(this)+10), targ2.getHeight(this));
+		  g.drawImage(targ2, xmax - (targ.getWidth(this)+10), 
+			      ymax - targ2.getHeight(this), this);
+		  play(getCodeBase(), "sounds/applause.au");
+		  g.drawImage(puff1, xmax - (targ.getWidth(this)+15), 
+			      ymax - (targ.getHeight(this)+40), this);
+
+		  // Puff2 over targ2
+	    try {Thread.sleep(75);} catch (InterruptedException e){}
+		  g.clearRect(xmax-(targ.getWidth(this)+15), 
+			      ymax-(targ.getHeight(this)+40),
 			      (targ.getWidth(this)+15), (targ.getHeight(this)+40));
 		  g.drawImage(targ2, xmax - (targ.getWidth(this)+10), 
 			      ymax - targ2.getHeight(this), this);
-		  x=0;
+		  g.drawImage(puff2, xmax - (targ.getWidth(this)+15), 
+			      ymax - (targ.getHeight(this)+40), this);
+
+		  // puff3 over targ2
+	    try {Thread.sleep(75);} catch (InterruptedException e){}
+		  g.clearRect(xmax-(targ.getWidth(this)+15), 
+			      ymax-(targ.getHeight(this)+40),
+			      (targ.getWidth(this)+15), (targ.getHeight(this)+40));
+		  g.drawImage(targ2, xmax - (targ.getWidth(this)+10), 
+			      ymax - targ2.getHeight(this), this);  
+		  g.drawImage(puff3, xmax - (targ.getWidth(this)+10), 
+			      ymax - (targ.getHeight(this)+40), this);
+
+		  // puff4 over targ2
+	    try {Thread.sleep(75);} catch (InterruptedException e){}
+		  g.clearRect(xmax-(targ.getWidth(this)+15), 
+			      ymax-(targ.getHeight(this)+40),
+			      (targ.getWidth(this)+15), (targ.getHeight(this)+40));
+		  g.drawImage(targ2, xmax - (targ.getWidth(this)+10), 
+			      ymax - targ2.getHeight(this), this);
+		  g.drawImage(puff4, xmax - (targ.getWidth(this)+10), 
+			      ymax - (targ.getHeight(this)+40), this);
+
+	    try {Thread.sleep(75);} catch (InterruptedException e){}
+		  if (fx != 0) fxTime = profiler.end(HIT_FX, fx) - fx;
 		}
+	      // targ2
+	      g.clearRect(xmax-(targ.getWidth(this)+15), ymax-(targ.getHeight(this)+40),
+			  (targ.getWidth(this)+15), (targ.getHeight(this)+40));
+	      g.drawImage(targ2, xmax - (targ.getWidth(this)+10), 
+			  ymax - targ2.getHeight(this), this);
+	      hit = true;
+	      targetDown = true;
+	      endX = s.x;
+	      endY = s.y;
+	      s.stop();
 	    }
-	  for (int i=0; i<4; i++) xo[i] = yo[i] = 0;
 	}
+      if (!hit)
+	{
+	  endX = s.x;
+	  endY = s.y;
+	}
+      //##### Flight time, not counting the hit FX
+      if (flight != 0) profiler.record(TRAJECTORY, System.nanoTime() - flight - fxTime);
+
+      if (animate && s.landed())
+	{
+	  ground.carve((int)s.x, (int)s.y, CRATER);
+	  ground.drawDirty(g, cameraX, VIEW);
+	  estimateHit();
+	}
+      for (int i=0; i<4; i++) xo[i] = yo[i] = 0;
+      return hit;
+    }
+
+  //##### Scrolls the view when x gets within a quarter of it of either
+  //##### edge, so x is in the middle again, and redraws the view.  g
+  //##### draws in field coordinates and is moved with the camera.
+  void follow(Graphics g, double x)
+    {
+      int margin = VIEW / 4;
+      if (x >= cameraX + margin && x < cameraX + VIEW - margin) return;
+      int camera = ground.follow(x, VIEW);
+      if (camera == cameraX) return;
+
+      g.translate(cameraX - camera, 0);
+      cameraX = camera;
+      g.clearRect(cameraX, 0, VIEW, ymax + 20);
+      ground.drawAll(g, cameraX, VIEW);
+      drawScenery(g);
+    }
+
+  //##### One step of the particles left after a flight
+  void settleParticles()
+    {
+      Graphics g = getGraphics();
+      if (g == null || particles.isEmpty())
+	{
+	  settle.stop();
+	  return;
+	}
+      g.translate(-cameraX, 0);
+      particles.update(gravity, windage);
+      particles.draw(g);
+      g.dispose();
     }
 
   public void start()
@@ -271,8 +502,101 @@ public class cannon extends java.applet.Applet
 	}
      }
 
+  //##### Connects to the duel server named by the duelhost and duelport
+  //##### parameters, or to one started on this machine if there is no
+  //##### duelhost, and waits for an opponent
+  public void startDuel()
+    {
+      if (duel != null) return;
+
+      String host = getParameter("duelhost");
+      String portParam = getParameter("duelport");
+      int port = (portParam != null) ? Integer.parseInt(portParam) : DUEL_PORT;
+
+      try
+	{
+	  if (host == null)
+	    {
+	      host = "127.0.0.1";
+	      try { DuelServer.startLocal(port); }
+	      catch (IOException e) {}	// one is running here already
+	    }
+	  duel = new DuelClient(host, port, this);
+	  duel.join(0);
+	  showStatus("Duel: waiting for an opponent");
+	}
+      catch (IOException e)
+	{
+	  duel = null;
+	  showStatus("Duel: " + e.getMessage());
+	}
+    }
+
+  boolean isDueling()
+    {
+      DuelClient d = duel;
+      return d != null && d.isMatched();
+    }
+
+  //##### DuelClient.Listener; called on the client's thread
+
+  public void matched(final int side, final int seed)
+    {
+      EventQueue.invokeLater(new Runnable() {
+	public void run() {
+	  opponentFired = false;
+	  estimateHit();
+	  showStatus("Duel: matched, you are player " + (side + 1));
+	}
+      });
+    }
+
+  //##### Fly the opponent's shot here with their settings, leaving
+  //##### ours alone
+  public void opponentShot(final int angle, final int vel, final int grav, final int wind)
+    {
+      EventQueue.invokeLater(new Runnable() {
+	public void run() {
+	  opponentAngle = angle;
+	  opponentVelocity = vel;
+	  opponentGravity = grav;
+	  opponentWind = wind;
+	  opponentFired = true;
+	  opponentNew = true;
+	  play(getCodeBase(), "sounds/cannon.au");
+	  repaint();
+	}
+      });
+    }
+
+  public void opponentLeft()
+    {
+      DuelClient d = duel;
+      duel = null;
+      if (d != null) d.close();
+      EventQueue.invokeLater(new Runnable() {
+	public void run() {
+	  opponentFired = false;
+	  estimateHit();
+	  showStatus("Duel: opponent left");
+	}
+      });
+    }
+
   public void destroy()
      {
+     estimator.close();
+     if (settle != null) settle.stop();
+     if (shotLog != null)
+	{
+	try { shotLog.close(); } catch (IOException e) {}
+	shotLog = null;
+	}
+     if (duel != null)
+	{
+	duel.close();
+	duel = null;
+	}
      if (frame != null)
 	{
 	frame.dispose();
@@ -294,6 +618,8 @@ class CannonFrame extends Frame {
     Scrollbar s_grav;
     Scrollbar s_wind;
 
+    Label odds;
+
     CannonFrame(cannon can) {
 	this.can = can;
 
@@ -336,6 +662,8 @@ class CannonFrame extends Frame {
 	add("South", p = new Panel());
 	p.add(new Button("Shoot"));
 	p.add(new Button("More Ammo"));
+	p.add(new Button("Duel"));
+	p.add(odds = new Label("Hit: ---%"));
 	pack();
 	//list();
     }
@@ -362,6 +690,10 @@ class CannonFrame extends Frame {
 	    can.shootShot();
 	    return true;
 	}
+	if ("Duel".equals(evt.arg)) {
+	    can.startDuel();
+	    return true;
+	}
 	if ("More Ammo".equals(evt.arg)) {
 	    can.more();
 	    return true;
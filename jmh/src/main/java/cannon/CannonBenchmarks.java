@@ -0,0 +1,96 @@
+package cannon;
+
+/*########################################################################
+ *
+ * CannonBenchmarks
+ *
+ *   JMH benchmarks for the hot path of cannon.paint(): the ballistic step
+ * and the target hit test, in Trajectory and in FixedTrajectory.  Run
+ * with -prof gc for the allocation of each; see jmh/pom.xml.
+ *
+ ######################################################################*/
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CannonBenchmarks
+{
+  static final double RADS = Trajectory.RADS;
+
+  //##### The defaults of CannonFrame: 60 degrees, speed 15, gravity 9.8
+  static final double THETA = 60 / RADS;
+  static final double VELOCITY = 3;
+  static final double GRAVITY = .098f;
+
+  Trajectory shell;
+  FixedTrajectory fixed;
+  int angle;
+
+  @Setup
+  public void setUp()
+    {
+      shell = new Trajectory();
+      shell.launch(THETA, VELOCITY, GRAVITY, 0, 600, 300);
+      fixed = new FixedTrajectory();
+      fixed.launchValues(60, 15, 98, 0, 600, 300);
+      angle = 1;
+    }
+
+  //##### One shell step plus the hit test, as in the paint loop
+  @Benchmark
+  public boolean step()
+    {
+      if (!shell.inFlight()) shell.launch(THETA, VELOCITY, GRAVITY, 0, 600, 300);
+      shell.step();
+      return shell.hitTarget();
+    }
+
+  //##### Whole flights over the range of angles the scrollbar gives
+  @Benchmark
+  public int flight()
+    {
+      angle = (angle % 89) + 1;
+      shell.launch(angle / RADS, VELOCITY, GRAVITY, .01, 600, 300);
+      return shell.fly() ? 1 : shell.getSteps();
+    }
+
+  //##### The same on a wide field, where flights take thousands of steps
+  @Benchmark
+  public int flightWide()
+    {
+      angle = (angle % 89) + 1;
+      shell.launch(angle / RADS, 6, .04, 0, 20000, 300);
+      return shell.fly() ? 1 : shell.getSteps();
+    }
+
+  //##### The same three in fixed point
+  @Benchmark
+  public boolean stepFixed()
+    {
+      if (!fixed.inFlight()) fixed.launchValues(60, 15, 98, 0, 600, 300);
+      fixed.step();
+      return fixed.hitTarget();
+    }
+
+  @Benchmark
+  public int flightFixed()
+    {
+      angle = (angle % 89) + 1;
+      fixed.launchValues(angle, 15, 98, 2, 600, 300);
+      return fixed.fly() ? 1 : fixed.getSteps();
+    }
+
+  @Benchmark
+  public int flightWideFixed()
+    {
+      angle = (angle % 89) + 1;
+      fixed.launchValues(angle, 30, 40, 0, 20000, 300);
+      return fixed.fly() ? 1 : fixed.getSteps();
+    }
+}
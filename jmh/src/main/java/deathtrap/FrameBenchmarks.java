@@ -0,0 +1,48 @@
+package deathtrap;
+
+/*########################################################################
+ *
+ * FrameBenchmarks
+ *
+ *   JMH benchmarks for the phases of a DeathTrap RUNNING frame on
+ * generated mazes of growing size.  The work is SyntheticFrame's, which
+ * is in the default package with the rest of DeathTrap; JMH cannot name
+ * it, so it is loaded by name once in setUp() and run through
+ * perf.Benchmark, an ordinary virtual call.
+ *
+ ######################################################################*/
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Benchmark;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class FrameBenchmarks
+{
+  @Param({ "visible", "minimap" })
+  String phase;
+
+  @Param({ "32", "64", "128", "256" })
+  int size;
+
+  perf.Benchmark frame;
+
+  @Setup
+  public void setUp() throws ReflectiveOperationException
+    {
+      frame = (perf.Benchmark)Class.forName("SyntheticFrame")
+	.getConstructor(String.class, int.class).newInstance(phase, size);
+      frame.setUp();
+    }
+
+  @Benchmark
+  public long frame()
+    {
+      return frame.run();
+    }
+}
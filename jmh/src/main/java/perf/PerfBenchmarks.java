@@ -0,0 +1,65 @@
+package perf;
+
+/*########################################################################
+ *
+ * PerfBenchmarks
+ *
+ *   JMH benchmarks for what the profiler adds to every frame, switched
+ * off and on, and the calibration loop JmhBaseline scales the baseline
+ * by.
+ *
+ ######################################################################*/
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Benchmark;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PerfBenchmarks
+{
+  FrameProfiler off, on;
+  PhaseHistogram histogram;
+  long x, nanos;
+
+  @Setup
+  public void setUp()
+    {
+      off = new FrameProfiler("jmh.off", new String[] { "frame" });
+      off.setEnabled(false);
+      on = new FrameProfiler("jmh.on", new String[] { "frame" });
+      on.setEnabled(true);
+      histogram = new PhaseHistogram();
+      x = 1;
+    }
+
+  @Benchmark
+  public long calibration()
+    {
+      return x = BenchmarkRunner.calibrate(x);
+    }
+
+  //##### begin() and end() around an empty phase
+  @Benchmark
+  public long profilerOff()
+    {
+      return off.end(0, off.begin());
+    }
+
+  @Benchmark
+  public long profilerOn()
+    {
+      return on.end(0, on.begin());
+    }
+
+  @Benchmark
+  public void histogramRecord()
+    {
+      nanos = (nanos * 5 + 1) & 0xffffff;
+      histogram.record(nanos);
+    }
+}